@@ -0,0 +1,22 @@
+package com.github.djarosz.spring.ejb.access.benchmark;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Class loaders used by benchmarks in place of WebSphere client class loader.
+ */
+final class BenchmarkClassLoaders {
+
+	private BenchmarkClassLoaders() {
+	}
+
+	/**
+	 * @return empty class loader delegating everything to class loader of benchmarks, so it is different from
+	 * thread context class loader but can see stand-in classes
+	 */
+	static ClassLoader newChildClassLoader() {
+		return new URLClassLoader(new URL[0], BenchmarkClassLoaders.class.getClassLoader());
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.github.djarosz.spring.ejb.access.benchmark;
+
+import com.github.djarosz.spring.ejb.access.ClassLoaderActionCallback;
+import com.github.djarosz.spring.ejb.access.ClassLoaderActionHelper;
+import com.github.djarosz.spring.ejb.access.ClassLoaderAffineExecutor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link ClassLoaderActionHelper#doInClassLoader(ClassLoader, ClassLoaderActionCallback)} when context class
+ * loader is already the target one and when it has to be switched, compared with bare set/restore and with handing
+ * action off to {@link ClassLoaderAffineExecutor}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClassLoaderSwitchBenchmark {
+
+	private ClassLoader sameClassLoader;
+
+	private ClassLoader otherClassLoader;
+
+	private ClassLoaderAffineExecutor affineExecutor;
+
+	private final ClassLoaderActionCallback<Object> callback = new ClassLoaderActionCallback<Object>() {
+		@Override
+		public Object execute() {
+			return Thread.currentThread().getContextClassLoader();
+		}
+	};
+
+	@Setup
+	public void setUp() {
+		sameClassLoader = Thread.currentThread().getContextClassLoader();
+		otherClassLoader = BenchmarkClassLoaders.newChildClassLoader();
+		affineExecutor = ClassLoaderAffineExecutor.acquire(otherClassLoader, 4);
+	}
+
+	@TearDown
+	public void tearDown() {
+		affineExecutor.release();
+	}
+
+	@Benchmark
+	public Object sameClassLoader() throws Throwable {
+		return ClassLoaderActionHelper.doInClassLoader(sameClassLoader, callback);
+	}
+
+	@Benchmark
+	public Object switchClassLoader() throws Throwable {
+		return ClassLoaderActionHelper.doInClassLoader(otherClassLoader, callback);
+	}
+
+	@Benchmark
+	public Object rawSwitch() {
+		Thread thread = Thread.currentThread();
+		ClassLoader caller = thread.getContextClassLoader();
+		try {
+			thread.setContextClassLoader(otherClassLoader);
+			return thread.getContextClassLoader();
+		} finally {
+			thread.setContextClassLoader(caller);
+		}
+	}
+
+	@Benchmark
+	public Object affineExecutor() throws Throwable {
+		return affineExecutor.execute(callback);
+	}
+
+}
@@ -0,0 +1,106 @@
+package com.github.djarosz.spring.ejb.access.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Directory of generated jars standing in for WebSphere client runtime loaded by each
+ * {@link com.github.djarosz.spring.ejb.access.LibDirClassLoader}. Classes are empty (no fields nor methods) but each of
+ * them is defined again by every class loader loading it, like classes of real client runtime.
+ */
+final class GeneratedLibDir {
+
+	static final String PACKAGE_PREFIX = "soak.generated.p";
+
+	private final File directory;
+
+	private final List<String> classNames = new ArrayList<String>();
+
+	private GeneratedLibDir(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @return temporary directory with <var>jars</var> jars, each with <var>classesPerJar</var> classes in its own
+	 * package (<code>soak.generated.p0</code>, <code>soak.generated.p1</code>, ...), deleted on exit
+	 */
+	static GeneratedLibDir create(int jars, int classesPerJar) throws IOException {
+		File directory = File.createTempFile("soak-lib", "");
+		if (!directory.delete() || !directory.mkdir()) {
+			throw new IOException("Could not create directory " + directory);
+		}
+		directory.deleteOnExit();
+
+		GeneratedLibDir libDir = new GeneratedLibDir(directory);
+		for (int i = 0; i < jars; i++) {
+			File jar = new File(directory, "generated-" + i + ".jar");
+			jar.deleteOnExit();
+			JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+			try {
+				for (int j = 0; j < classesPerJar; j++) {
+					String className = PACKAGE_PREFIX + i + ".Generated" + j;
+					out.putNextEntry(new JarEntry(className.replace('.', '/') + ".class"));
+					out.write(classBytes(className.replace('.', '/')));
+					out.closeEntry();
+					libDir.classNames.add(className);
+				}
+			} finally {
+				out.close();
+			}
+		}
+		return libDir;
+	}
+
+	/**
+	 * @return bytes of public class with given internal name extending <code>Object</code>, with no members
+	 */
+	private static byte[] classBytes(String internalName) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0); // minor version
+		out.writeShort(50); // Java 6
+		out.writeShort(5); // constant pool count
+		out.writeByte(1); // #1 Utf8
+		out.writeUTF(internalName);
+		out.writeByte(7); // #2 Class #1
+		out.writeShort(1);
+		out.writeByte(1); // #3 Utf8
+		out.writeUTF("java/lang/Object");
+		out.writeByte(7); // #4 Class #3
+		out.writeShort(3);
+		out.writeShort(0x0021); // ACC_PUBLIC | ACC_SUPER
+		out.writeShort(2); // this class
+		out.writeShort(4); // super class
+		out.writeShort(0); // interfaces
+		out.writeShort(0); // fields
+		out.writeShort(0); // methods
+		out.writeShort(0); // attributes
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Loads all generated classes with given class loader.
+	 *
+	 * @return number of classes loaded
+	 */
+	int loadAll(ClassLoader classLoader) throws ClassNotFoundException {
+		for (String className : classNames) {
+			Class.forName(className, false, classLoader);
+		}
+		return classNames.size();
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.github.djarosz.spring.ejb.access.benchmark;
+
+import com.github.djarosz.spring.ejb.access.WASRemoteStatelessSessionProxyFactoryBean;
+import com.github.djarosz.spring.ejb.access.WASRemoteStatelessSessionProxyFactoryBean.InvocationMode;
+import com.github.djarosz.spring.ejb.access.benchmark.standin.Echo;
+import com.github.djarosz.spring.ejb.access.benchmark.standin.StandInServer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of calls with timeout made by many threads through {@link WASRemoteStatelessSessionProxyFactoryBean}
+ * proxy in each {@link InvocationMode}: timed out by interrupting calling thread, or made on platform or virtual
+ * threads and timed out by cancelling their future. Calls either return right away or keep server thread for
+ * <var>serverMillis</var>. Change number of calling threads with <code>-t</code> to see how modes scale, run on JDK 21
+ * to measure virtual threads (older JVMs fall back to platform threads).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class InvocationModeBenchmark {
+
+	@Param({"INTERRUPT_CALLER", "PLATFORM_THREADS", "VIRTUAL_THREADS"})
+	public InvocationMode invocationMode;
+
+	@Param({"0", "5"})
+	public long serverMillis;
+
+	private StandInServer server;
+
+	private WASRemoteStatelessSessionProxyFactoryBean factoryBean;
+
+	private Echo proxy;
+
+	@Setup
+	public void setUp() throws Exception {
+		server = new StandInServer().start();
+
+		factoryBean = new WASRemoteStatelessSessionProxyFactoryBean();
+		factoryBean.setBeanName("echo");
+		factoryBean.setClassLoader(BenchmarkClassLoaders.newChildClassLoader());
+		factoryBean.setJndiEnvironment(StandInServer.jndiEnvironment());
+		factoryBean.setJndiName(StandInServer.JNDI_NAME);
+		factoryBean.setBusinessInterface(Echo.class);
+		factoryBean.setProviderUrl("iiop://localhost:2809");
+		factoryBean.setUser("benchmark");
+		factoryBean.setPassword("benchmark");
+		factoryBean.setTimeout(5000);
+		factoryBean.setInvocationMode(invocationMode);
+		factoryBean.setInvocationPoolSize(1000);
+		factoryBean.afterPropertiesSet();
+		proxy = (Echo) factoryBean.getObject();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		factoryBean.destroy();
+		server.stop();
+	}
+
+	@Benchmark
+	public String call() {
+		return serverMillis > 0 ? proxy.sleep(serverMillis) : proxy.echo("ping");
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.github.djarosz.spring.ejb.access.benchmark;
+
+import com.github.djarosz.spring.ejb.access.ClassLoaderAwareJndiTemplate;
+import com.github.djarosz.spring.ejb.access.benchmark.standin.StandInServer;
+import java.util.concurrent.TimeUnit;
+import javax.naming.NamingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jndi.JndiTemplate;
+
+/**
+ * JNDI lookup of stand-in bean through {@link ClassLoaderAwareJndiTemplate} compared with plain {@link JndiTemplate}.
+ * Each lookup creates and closes initial context, as in Spring, unless context pooling is enabled.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JndiLookupBenchmark {
+
+	private StandInServer server;
+
+	private JndiTemplate plainTemplate;
+
+	private ClassLoaderAwareJndiTemplate classLoaderAwareTemplate;
+
+	private ClassLoaderAwareJndiTemplate pooledTemplate;
+
+	@Setup
+	public void setUp() throws Exception {
+		server = new StandInServer().start();
+		plainTemplate = new JndiTemplate(StandInServer.jndiEnvironment());
+		classLoaderAwareTemplate = new ClassLoaderAwareJndiTemplate(BenchmarkClassLoaders.newChildClassLoader(),
+				StandInServer.jndiEnvironment());
+		pooledTemplate = new ClassLoaderAwareJndiTemplate(BenchmarkClassLoaders.newChildClassLoader(),
+				StandInServer.jndiEnvironment());
+		pooledTemplate.setContextPoolSize(8);
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		server.stop();
+	}
+
+	@Benchmark
+	public Object plainJndiTemplate() throws NamingException {
+		return plainTemplate.lookup(StandInServer.JNDI_NAME);
+	}
+
+	@Benchmark
+	public Object classLoaderAwareJndiTemplate() throws NamingException {
+		return classLoaderAwareTemplate.lookup(StandInServer.JNDI_NAME);
+	}
+
+	@Benchmark
+	public Object pooledClassLoaderAwareJndiTemplate() throws NamingException {
+		return pooledTemplate.lookup(StandInServer.JNDI_NAME);
+	}
+
+}
@@ -0,0 +1,85 @@
+package com.github.djarosz.spring.ejb.access.benchmark;
+
+import com.github.djarosz.spring.ejb.access.WASRemoteStatelessSessionProxyFactoryBean;
+import com.github.djarosz.spring.ejb.access.benchmark.standin.Echo;
+import com.github.djarosz.spring.ejb.access.benchmark.standin.EchoRemote;
+import com.github.djarosz.spring.ejb.access.benchmark.standin.StandInServer;
+import java.rmi.RemoteException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end call of stand-in bean (RMI over loopback) through {@link WASRemoteStatelessSessionProxyFactoryBean}
+ * proxy, with timeout disabled (<code>-1</code>) and enabled, switching context class loader of calling thread or
+ * handing calls off to class loader affine executor, compared with calling RMI stub directly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProxyInvocationBenchmark {
+
+	@Param({"-1", "5000"})
+	public long timeout;
+
+	@Param({"false", "true"})
+	public boolean classLoaderAffineExecution;
+
+	private StandInServer server;
+
+	private WASRemoteStatelessSessionProxyFactoryBean factoryBean;
+
+	private Echo proxy;
+
+	private EchoRemote stub;
+
+	@Setup
+	public void setUp() throws Exception {
+		server = new StandInServer().start();
+		stub = server.getStub();
+
+		factoryBean = new WASRemoteStatelessSessionProxyFactoryBean();
+		factoryBean.setBeanName("echo");
+		factoryBean.setClassLoader(BenchmarkClassLoaders.newChildClassLoader());
+		factoryBean.setJndiEnvironment(StandInServer.jndiEnvironment());
+		factoryBean.setJndiName(StandInServer.JNDI_NAME);
+		factoryBean.setBusinessInterface(Echo.class);
+		factoryBean.setProviderUrl("iiop://localhost:2809");
+		factoryBean.setUser("benchmark");
+		factoryBean.setPassword("benchmark");
+		factoryBean.setTimeout(timeout);
+		factoryBean.setClassLoaderAffineExecution(classLoaderAffineExecution);
+		factoryBean.afterPropertiesSet();
+		proxy = (Echo) factoryBean.getObject();
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		factoryBean.destroy();
+		server.stop();
+	}
+
+	@Benchmark
+	public String proxy() {
+		return proxy.echo("ping");
+	}
+
+	@Benchmark
+	public String directStub() throws RemoteException {
+		return stub.echo("ping");
+	}
+
+}
@@ -0,0 +1,324 @@
+package com.github.djarosz.spring.ejb.access.benchmark;
+
+import com.github.djarosz.spring.ejb.access.ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean;
+import com.github.djarosz.spring.ejb.access.LatencyHistogram;
+import com.github.djarosz.spring.ejb.access.LibDirClassLoader;
+import com.github.djarosz.spring.ejb.access.LibDirClassLoaderFactoryBean;
+import com.github.djarosz.spring.ejb.access.benchmark.standin.Echo;
+import com.github.djarosz.spring.ejb.access.benchmark.standin.StandInServer;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Soak and scaling test of many credential isolated proxies called by many threads. For each number of
+ * <var>tenants</var> it creates that many {@link com.github.djarosz.spring.ejb.access.LibDirClassLoader}s over
+ * directory of generated jars (see {@link GeneratedLibDir}), loading all generated classes in each of them, and that
+ * many {@link ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean} proxies, each calling its own stand-in server.
+ * Then for each number of <var>threads</var> it calls all proxies round robin for <var>duration</var> seconds and
+ * writes CSV row each <var>interval</var> seconds with throughput, latency percentiles, metaspace per class loader,
+ * live thread count and GC pressure (collections, collection time, allocation rate).
+ * <p>
+ * Run after <code>mvn package</code>, options are <code>name=value</code> arguments (defaults shown):
+ * <pre>
+ * java -cp target/benchmarks.jar com.github.djarosz.spring.ejb.access.benchmark.SoakHarness \
+ *	tenants=1,4,16 threads=1,4,16 duration=30 interval=10 warmUp=5 jars=4 classesPerJar=500 \
+ *	isolatedPackages= output=
+ * </pre>
+ * With <var>isolatedPackages</var> (eg <code>soak.generated.p0</code>) class loaders are layered, see
+ * {@link LibDirClassLoaderFactoryBean#setIsolatedPackages(String[])}. CSV goes to <var>output</var> file or standard
+ * output when not set.
+ */
+public class SoakHarness {
+
+	private static final String HEADER = "tenants,threads,elapsedSec,calls,errors,throughputPerSec,meanUs,p50Us,p99Us,p999Us,"
+			+ "metaspaceKB,metaspacePerLoaderKB,loadedClasses,liveThreads,heapUsedMB,gcCount,gcTimeMs,allocatedMBPerSec";
+
+	private final Map<String, String> options = new HashMap<String, String>();
+
+	private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+	private GeneratedLibDir libDir;
+
+	private PrintStream csv;
+
+	private final List<StandInServer> servers = new ArrayList<StandInServer>();
+
+	private final List<ClassLoader> classLoaders = new ArrayList<ClassLoader>();
+
+	private final List<ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean> factoryBeans =
+			new ArrayList<ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean>();
+
+	private final List<Echo> proxies = new ArrayList<Echo>();
+
+	private long metaspacePerLoader;
+
+	public static void main(String[] args) throws Exception {
+		SoakHarness harness = new SoakHarness();
+		for (String arg : args) {
+			int idx = arg.indexOf('=');
+			if (idx <= 0) {
+				throw new IllegalArgumentException("Expected name=value argument, got: " + arg);
+			}
+			harness.options.put(arg.substring(0, idx), arg.substring(idx + 1));
+		}
+		harness.run();
+		System.exit(0);
+	}
+
+	private void run() throws Exception {
+		libDir = GeneratedLibDir.create(getInt("jars", 4), getInt("classesPerJar", 500));
+		String output = getOption("output", "");
+		csv = output.length() > 0 ? new PrintStream(new FileOutputStream(output), true) : System.out;
+		try {
+			csv.println(HEADER);
+			for (int tenants : getInts("tenants", "1,4,16")) {
+				startTenants(tenants);
+				try {
+					for (int threads : getInts("threads", "1,4,16")) {
+						runStep(tenants, threads);
+					}
+				} finally {
+					stopTenants();
+				}
+			}
+		} finally {
+			if (csv != System.out) {
+				csv.close();
+			}
+		}
+	}
+
+	private void startTenants(int tenants) throws Exception {
+		LibDirClassLoaderFactoryBean classLoaderFactory = new LibDirClassLoaderFactoryBean();
+		classLoaderFactory.setBeanName("soak");
+		classLoaderFactory.setBeanClassLoader(SoakHarness.class.getClassLoader());
+		classLoaderFactory.setDirectory(libDir.getDirectory());
+		String isolatedPackages = getOption("isolatedPackages", "");
+		if (isolatedPackages.length() > 0) {
+			classLoaderFactory.setIsolatedPackages(isolatedPackages.split(","));
+		}
+		classLoaderFactory.afterPropertiesSet();
+
+		collectGarbage();
+		long metaspaceBefore = getMetaspaceUsed();
+		for (int i = 0; i < tenants; i++) {
+			ClassLoader classLoader = (ClassLoader) classLoaderFactory.getObject();
+			libDir.loadAll(classLoader);
+			classLoaders.add(classLoader);
+		}
+		collectGarbage();
+		metaspacePerLoader = (getMetaspaceUsed() - metaspaceBefore) / tenants;
+
+		for (int i = 0; i < tenants; i++) {
+			StandInServer server = new StandInServer(StandInServer.JNDI_NAME + i).start();
+			servers.add(server);
+
+			ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean factoryBean = new ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean();
+			factoryBean.setBeanName("echo" + i);
+			factoryBean.setClassLoader(classLoaders.get(i));
+			factoryBean.setJndiEnvironment(StandInServer.jndiEnvironment());
+			factoryBean.setJndiName(server.getJndiName());
+			factoryBean.setBusinessInterface(Echo.class);
+			factoryBean.afterPropertiesSet();
+			factoryBeans.add(factoryBean);
+			proxies.add((Echo) factoryBean.getObject());
+		}
+		System.err.println("Started " + tenants + " tenants, ~" + metaspacePerLoader / 1024 + " KB metaspace per class loader");
+	}
+
+	private void stopTenants() throws Exception {
+		for (ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean factoryBean : factoryBeans) {
+			factoryBean.destroy();
+		}
+		for (StandInServer server : servers) {
+			server.stop();
+		}
+		for (ClassLoader classLoader : classLoaders) {
+			if (classLoader instanceof LibDirClassLoader) {
+				((LibDirClassLoader) classLoader).release();
+			}
+		}
+		factoryBeans.clear();
+		servers.clear();
+		classLoaders.clear();
+		proxies.clear();
+	}
+
+	private void runStep(int tenants, int threads) throws InterruptedException {
+		final LatencyHistogram latency = new LatencyHistogram();
+		final AtomicLong errors = new AtomicLong();
+		final Echo[] targets = proxies.toArray(new Echo[proxies.size()]);
+
+		List<Worker> workers = new ArrayList<Worker>();
+		for (int i = 0; i < threads; i++) {
+			Worker worker = new Worker(targets, i % targets.length, latency, errors);
+			worker.setName("Soak-" + i);
+			worker.setDaemon(true);
+			workers.add(worker);
+			worker.start();
+		}
+
+		try {
+			Thread.sleep(TimeUnit.SECONDS.toMillis(getInt("warmUp", 5)));
+			long duration = TimeUnit.SECONDS.toNanos(getInt("duration", 30));
+			long interval = TimeUnit.SECONDS.toNanos(getInt("interval", 10));
+
+			long start = System.nanoTime();
+			Sample previous = new Sample(workers);
+			latency.reset();
+			errors.set(0);
+			while (System.nanoTime() - start < duration) {
+				TimeUnit.NANOSECONDS.sleep(Math.min(interval, duration - (System.nanoTime() - start)));
+				Sample current = new Sample(workers);
+				writeRow(tenants, threads, (current.nanos - start) / 1e9, previous, current, latency, errors.getAndSet(0));
+				latency.reset();
+				previous = current;
+			}
+		} finally {
+			for (Worker worker : workers) {
+				worker.running = false;
+			}
+			for (Worker worker : workers) {
+				worker.join();
+			}
+		}
+	}
+
+	private void writeRow(int tenants, int threads, double elapsedSec, Sample previous, Sample current,
+			LatencyHistogram latency, long errors) {
+		double seconds = (current.nanos - previous.nanos) / 1e9;
+		long calls = latency.getCount() + errors;
+		csv.println(String.format(Locale.ROOT, "%d,%d,%.1f,%d,%d,%.1f,%d,%d,%d,%d,%d,%d,%d,%d,%.1f,%d,%d,%.1f",
+				tenants, threads, elapsedSec, calls, errors, calls / seconds, latency.getMeanMicros(),
+				latency.getPercentileMicros(0.5), latency.getPercentileMicros(0.99), latency.getPercentileMicros(0.999),
+				getMetaspaceUsed() / 1024, metaspacePerLoader / 1024,
+				ManagementFactory.getClassLoadingMXBean().getLoadedClassCount(), threadBean.getThreadCount(),
+				ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024.0 * 1024),
+				current.gcCount - previous.gcCount, current.gcTime - previous.gcTime,
+				previous.allocated >= 0 && current.allocated >= 0
+						? (current.allocated - previous.allocated) / (1024.0 * 1024) / seconds : -1.0));
+	}
+
+	/**
+	 * Counters changing during step, rows report difference between two samples.
+	 */
+	private class Sample {
+
+		private final long nanos = System.nanoTime();
+
+		private long gcCount;
+
+		private long gcTime;
+
+		/**
+		 * Bytes allocated by worker threads, -1 if JVM does not measure it.
+		 */
+		private long allocated;
+
+		Sample(List<Worker> workers) {
+			for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+				gcCount += Math.max(gcBean.getCollectionCount(), 0);
+				gcTime += Math.max(gcBean.getCollectionTime(), 0);
+			}
+			allocated = -1;
+			if (threadBean instanceof com.sun.management.ThreadMXBean) {
+				long[] ids = new long[workers.size()];
+				for (int i = 0; i < ids.length; i++) {
+					ids[i] = workers.get(i).getId();
+				}
+				allocated = 0;
+				for (long bytes : ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(ids)) {
+					if (bytes < 0) {
+						allocated = -1;
+						break;
+					}
+					allocated += bytes;
+				}
+			}
+		}
+
+	}
+
+	private static class Worker extends Thread {
+
+		private final Echo[] targets;
+
+		private int next;
+
+		private final LatencyHistogram latency;
+
+		private final AtomicLong errors;
+
+		private volatile boolean running = true;
+
+		Worker(Echo[] targets, int first, LatencyHistogram latency, AtomicLong errors) {
+			this.targets = targets;
+			this.next = first;
+			this.latency = latency;
+			this.errors = errors;
+		}
+
+		@Override
+		public void run() {
+			while (running) {
+				Echo target = targets[next];
+				next = (next + 1) % targets.length;
+				long start = System.nanoTime();
+				try {
+					target.echo("ping");
+					latency.record(System.nanoTime() - start);
+				} catch (RuntimeException e) {
+					errors.incrementAndGet();
+				}
+			}
+		}
+
+	}
+
+	private static void collectGarbage() throws InterruptedException {
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+	}
+
+	private static long getMetaspaceUsed() {
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getName().contains("Metaspace") || pool.getName().contains("Perm Gen")) {
+				used += pool.getUsage().getUsed();
+			}
+		}
+		return used;
+	}
+
+	private String getOption(String name, String defaultValue) {
+		String value = options.get(name);
+		return value != null ? value : defaultValue;
+	}
+
+	private int getInt(String name, int defaultValue) {
+		return Integer.parseInt(getOption(name, String.valueOf(defaultValue)));
+	}
+
+	private int[] getInts(String name, String defaultValue) {
+		String[] values = getOption(name, defaultValue).split(",");
+		int[] ints = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			ints[i] = Integer.parseInt(values[i].trim());
+		}
+		return ints;
+	}
+
+}
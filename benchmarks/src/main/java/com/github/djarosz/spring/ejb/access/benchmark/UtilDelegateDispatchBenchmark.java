@@ -0,0 +1,99 @@
+package com.github.djarosz.spring.ejb.access.benchmark;
+
+import com.github.djarosz.spring.ejb.access.ClassLoaderUtilDelegate;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.rmi.CORBA.UtilDelegate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Overhead of dispatching {@link javax.rmi.CORBA.Util} calls through {@link ClassLoaderUtilDelegate}: calling real
+ * delegate directly, through current lock free lookup and through synchronized {@link WeakHashMap} lookup used
+ * before. Real delegate is JDK ORB one (<var>realUtilClass</var>), so this runs on JDK 8 only.
+ * <p>
+ * Run with <code>-t 8</code> (or more) to see lock contention of legacy lookup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class UtilDelegateDispatchBenchmark {
+
+	private static final String REAL_UTIL_CLASS_KEY = "javax.rmi.CORBA.ClassLoaderUtilDelegate.UtilClass";
+
+	@Param("com.sun.corba.se.impl.javax.rmi.CORBA.Util")
+	public String realUtilClass;
+
+	private UtilDelegate realDelegate;
+
+	private UtilDelegate classLoaderDelegate;
+
+	private LegacyLookup legacyLookup;
+
+	@Setup
+	public void setUp() throws Exception {
+		System.setProperty(REAL_UTIL_CLASS_KEY, realUtilClass);
+		realDelegate = (UtilDelegate) Class.forName(realUtilClass).newInstance();
+		classLoaderDelegate = new ClassLoaderUtilDelegate();
+		legacyLookup = new LegacyLookup(realUtilClass);
+	}
+
+	@Benchmark
+	public String direct() {
+		return realDelegate.getCodebase(String.class);
+	}
+
+	@Benchmark
+	public String classLoaderUtilDelegate() {
+		return classLoaderDelegate.getCodebase(String.class);
+	}
+
+	@Benchmark
+	public String legacyWeakHashMap() {
+		return legacyLookup.getDelegate().getCodebase(String.class);
+	}
+
+	/**
+	 * Replica of original per class loader lookup: synchronized method over {@link WeakHashMap}.
+	 */
+	private static class LegacyLookup {
+
+		private final Map<ClassLoader, UtilDelegate> utilDelegates = new WeakHashMap<ClassLoader, UtilDelegate>();
+
+		private final String realUtilClass;
+
+		LegacyLookup(String realUtilClass) {
+			this.realUtilClass = realUtilClass;
+		}
+
+		synchronized UtilDelegate getDelegate() {
+			ClassLoader cl = Thread.currentThread().getContextClassLoader();
+			UtilDelegate delegate = utilDelegates.get(cl);
+			if (delegate == null) {
+				try {
+					delegate = (UtilDelegate) Class.forName(realUtilClass, false, cl).newInstance();
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+				utilDelegates.put(cl, delegate);
+			}
+			return delegate;
+		}
+	}
+
+}
@@ -0,0 +1,15 @@
+package com.github.djarosz.spring.ejb.access.benchmark.standin;
+
+/**
+ * Business interface of stand-in session bean, as seen by application code.
+ */
+public interface Echo {
+
+	String echo(String message);
+
+	/**
+	 * Returns after sleeping given number of milliseconds, to simulate slow remote calls.
+	 */
+	String sleep(long millis);
+
+}
@@ -0,0 +1,33 @@
+package com.github.djarosz.spring.ejb.access.benchmark.standin;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stateless stand-in session bean exported over RMI by {@link StandInServer}.
+ */
+public class EchoBean implements EchoRemote {
+
+	private final AtomicLong calls = new AtomicLong();
+
+	@Override
+	public String echo(String message) {
+		calls.incrementAndGet();
+		return message;
+	}
+
+	@Override
+	public String sleep(long millis) {
+		calls.incrementAndGet();
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return "slept " + millis;
+	}
+
+	public long getCalls() {
+		return calls.get();
+	}
+
+}
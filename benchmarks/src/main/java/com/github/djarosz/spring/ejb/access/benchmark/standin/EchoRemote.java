@@ -0,0 +1,16 @@
+package com.github.djarosz.spring.ejb.access.benchmark.standin;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Remote interface of stand-in session bean. Like a remote EJB stub it is not the business interface, so
+ * proxy has to map business methods to stub methods.
+ */
+public interface EchoRemote extends Remote {
+
+	String echo(String message) throws RemoteException;
+
+	String sleep(long millis) throws RemoteException;
+
+}
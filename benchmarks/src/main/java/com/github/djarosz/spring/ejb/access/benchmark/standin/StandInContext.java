@@ -0,0 +1,182 @@
+package com.github.djarosz.spring.ejb.access.benchmark.standin;
+
+import java.util.Hashtable;
+import java.util.Map;
+import javax.naming.Context;
+import javax.naming.Name;
+import javax.naming.NameClassPair;
+import javax.naming.NameNotFoundException;
+import javax.naming.NameParser;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.OperationNotSupportedException;
+
+/**
+ * Read only JNDI context over static map. Only lookups are supported. When environment contains provider URL,
+ * names bound as <code>&lt;provider URL&gt;/&lt;name&gt;</code> are looked up first, so several stand-in servers
+ * can pretend to be cluster members.
+ */
+class StandInContext implements Context {
+
+	private final Map<String, Object> bindings;
+
+	private final Hashtable<Object, Object> environment;
+
+	StandInContext(Map<String, Object> bindings, Hashtable<?, ?> environment) {
+		this.bindings = bindings;
+		this.environment = environment != null ? new Hashtable<Object, Object>(environment) : new Hashtable<Object, Object>();
+	}
+
+	@Override
+	public Object lookup(String name) throws NamingException {
+		Object providerUrl = environment.get(Context.PROVIDER_URL);
+		Object object = providerUrl != null ? bindings.get(providerUrl + "/" + name) : null;
+		if (object == null) {
+			object = bindings.get(name);
+		}
+		if (object == null) {
+			throw new NameNotFoundException(name);
+		}
+		return object;
+	}
+
+	@Override
+	public Object lookup(Name name) throws NamingException {
+		return lookup(name.toString());
+	}
+
+	@Override
+	public Hashtable<?, ?> getEnvironment() {
+		return environment;
+	}
+
+	@Override
+	public Object addToEnvironment(String propName, Object propVal) {
+		return environment.put(propName, propVal);
+	}
+
+	@Override
+	public Object removeFromEnvironment(String propName) {
+		return environment.remove(propName);
+	}
+
+	@Override
+	public void close() {
+	}
+
+	@Override
+	public String getNameInNamespace() {
+		return "";
+	}
+
+	@Override
+	public void bind(Name name, Object obj) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public void bind(String name, Object obj) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public void rebind(Name name, Object obj) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public void rebind(String name, Object obj) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public void unbind(Name name) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public void unbind(String name) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public void rename(Name oldName, Name newName) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public void rename(String oldName, String newName) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public NamingEnumeration<NameClassPair> list(Name name) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public NamingEnumeration<NameClassPair> list(String name) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public NamingEnumeration<javax.naming.Binding> listBindings(Name name) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public NamingEnumeration<javax.naming.Binding> listBindings(String name) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public void destroySubcontext(Name name) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public void destroySubcontext(String name) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public Context createSubcontext(Name name) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public Context createSubcontext(String name) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public Object lookupLink(Name name) throws NamingException {
+		return lookup(name);
+	}
+
+	@Override
+	public Object lookupLink(String name) throws NamingException {
+		return lookup(name);
+	}
+
+	@Override
+	public NameParser getNameParser(Name name) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public NameParser getNameParser(String name) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public Name composeName(Name name, Name prefix) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+	@Override
+	public String composeName(String name, String prefix) throws NamingException {
+		throw new OperationNotSupportedException();
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.github.djarosz.spring.ejb.access.benchmark.standin;
+
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.naming.Context;
+import javax.naming.spi.InitialContextFactory;
+
+/**
+ * JNDI {@link InitialContextFactory} serving objects bound in static in-memory registry. Use as
+ * <code>java.naming.factory.initial</code> in benchmark JNDI environment.
+ */
+public class StandInInitialContextFactory implements InitialContextFactory {
+
+	private static final Map<String, Object> BINDINGS = new ConcurrentHashMap<String, Object>();
+
+	public static void bind(String name, Object object) {
+		BINDINGS.put(name, object);
+	}
+
+	public static void unbind(String name) {
+		BINDINGS.remove(name);
+	}
+
+	@Override
+	public Context getInitialContext(Hashtable<?, ?> environment) {
+		return new StandInContext(BINDINGS, environment);
+	}
+
+}
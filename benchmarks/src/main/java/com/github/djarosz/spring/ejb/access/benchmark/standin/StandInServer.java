@@ -0,0 +1,77 @@
+package com.github.djarosz.spring.ejb.access.benchmark.standin;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Properties;
+import javax.naming.Context;
+
+/**
+ * In-process replacement of remote application server: exports {@link EchoBean} over RMI (loopback TCP) and binds
+ * its stub in {@link StandInInitialContextFactory} registry.
+ */
+public class StandInServer {
+
+	public static final String JNDI_NAME = "ejb/Echo";
+
+	private final String jndiName;
+
+	private final String providerUrl;
+
+	private final EchoBean bean = new EchoBean();
+
+	private EchoRemote stub;
+
+	public StandInServer() {
+		this(JNDI_NAME);
+	}
+
+	public StandInServer(String jndiName) {
+		this(jndiName, null);
+	}
+
+	/**
+	 * @param providerUrl provider URL this server is visible under, <code>null</code> for all
+	 */
+	public StandInServer(String jndiName, String providerUrl) {
+		this.jndiName = jndiName;
+		this.providerUrl = providerUrl;
+	}
+
+	private String bindName() {
+		return providerUrl != null ? providerUrl + "/" + jndiName : jndiName;
+	}
+
+	public StandInServer start() throws RemoteException {
+		stub = (EchoRemote) UnicastRemoteObject.exportObject(bean, 0);
+		StandInInitialContextFactory.bind(bindName(), stub);
+		return this;
+	}
+
+	public void stop() throws NoSuchObjectException {
+		StandInInitialContextFactory.unbind(bindName());
+		UnicastRemoteObject.unexportObject(bean, true);
+	}
+
+	public EchoRemote getStub() {
+		return stub;
+	}
+
+	public EchoBean getBean() {
+		return bean;
+	}
+
+	public String getJndiName() {
+		return jndiName;
+	}
+
+	/**
+	 * @return JNDI environment pointing to stand-in naming
+	 */
+	public static Properties jndiEnvironment() {
+		Properties environment = new Properties();
+		environment.setProperty(Context.INITIAL_CONTEXT_FACTORY, StandInInitialContextFactory.class.getName());
+		return environment;
+	}
+
+}
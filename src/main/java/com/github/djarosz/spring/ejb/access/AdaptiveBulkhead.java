@@ -0,0 +1,176 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link Bulkhead} which adjusts its limit to observed latency. Lowest latency seen is taken as the latency
+ * of not overloaded server. When call takes more than <var>latencyTolerance</var> times that the limit is
+ * decreased by <var>backoffRatio</var> (but not below <var>minLimit</var>), otherwise if limit was close to be
+ * reached it is increased by one (up to <var>maxLimit</var>). Lowest latency is forgotten every
+ * <var>baselineResetInterval</var> calls so baseline follows the server when it gets permanently slower.
+ * Failed calls (which often fail fast, eg with connection refused) are not latency samples, they decrease the limit.
+ * Calls over the limit wait up to <var>maxWait</var> milliseconds.
+ */
+public class AdaptiveBulkhead implements Bulkhead {
+
+	private int initialLimit = 10;
+
+	private int minLimit = 1;
+
+	private int maxLimit = 200;
+
+	private double latencyTolerance = 2.0;
+
+	private double backoffRatio = 0.9;
+
+	private int baselineResetInterval = 10000;
+
+	private long maxWait;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition permitReleased = lock.newCondition();
+
+	private double limit = -1;
+
+	private int inFlight;
+
+	private int waiting;
+
+	private long minLatency = Long.MAX_VALUE;
+
+	private int samples;
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	@Override
+	public boolean tryAcquire() throws InterruptedException {
+		lock.lock();
+		try {
+			if (limit < 0) {
+				limit = initialLimit;
+			}
+
+			if (inFlight >= (int) limit) {
+				long remaining = TimeUnit.MILLISECONDS.toNanos(maxWait);
+				waiting++;
+				try {
+					while (inFlight >= (int) limit) {
+						if (remaining <= 0) {
+							rejected.incrementAndGet();
+							return false;
+						}
+						remaining = permitReleased.awaitNanos(remaining);
+					}
+				} finally {
+					waiting--;
+				}
+			}
+			inFlight++;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void release(long latencyNanos, boolean failed) {
+		lock.lock();
+		try {
+			if (failed) {
+				limit = Math.max(minLimit, limit * backoffRatio);
+			} else {
+				adjustLimit(latencyNanos);
+			}
+
+			inFlight--;
+			permitReleased.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Must be called holding lock.
+	 */
+	private void adjustLimit(long latencyNanos) {
+		if (++samples >= baselineResetInterval) {
+			samples = 0;
+			minLatency = Long.MAX_VALUE;
+		}
+		minLatency = Math.min(minLatency, latencyNanos);
+
+		if (latencyNanos > minLatency * latencyTolerance) {
+			limit = Math.max(minLimit, limit * backoffRatio);
+		} else if (inFlight * 2 >= limit) {
+			limit = Math.min(maxLimit, limit + 1);
+		}
+	}
+
+	@Override
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int getQueueDepth() {
+		lock.lock();
+		try {
+			return waiting;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	@Override
+	public int getLimit() {
+		lock.lock();
+		try {
+			return limit < 0 ? initialLimit : (int) limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void setInitialLimit(int initialLimit) {
+		this.initialLimit = initialLimit;
+	}
+
+	public void setMinLimit(int minLimit) {
+		this.minLimit = minLimit;
+	}
+
+	public void setMaxLimit(int maxLimit) {
+		this.maxLimit = maxLimit;
+	}
+
+	public void setLatencyTolerance(double latencyTolerance) {
+		this.latencyTolerance = latencyTolerance;
+	}
+
+	public void setBackoffRatio(double backoffRatio) {
+		this.backoffRatio = backoffRatio;
+	}
+
+	public void setBaselineResetInterval(int baselineResetInterval) {
+		this.baselineResetInterval = baselineResetInterval;
+	}
+
+	public void setMaxWait(long maxWait) {
+		this.maxWait = maxWait;
+	}
+
+}
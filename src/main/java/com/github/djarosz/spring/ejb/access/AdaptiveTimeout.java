@@ -0,0 +1,64 @@
+package com.github.djarosz.spring.ejb.access;
+
+/**
+ * Timeout of one business method derived from its observed latency: given <var>percentile</var> of latency of
+ * successful calls made during last minute ({@link MethodStatistics#getRecentLatency()}) times <var>multiplier</var>,
+ * but not less than <var>minTimeout</var> and not more than <var>maxTimeout</var>. Until enough calls are recorded
+ * <var>maxTimeout</var> is used.
+ * <p>
+ * Timeout is recomputed at most once per second, calls just read last computed value. Chosen timeout is published
+ * in {@link MethodStatistics#getTimeoutDeadline()}.
+ */
+class AdaptiveTimeout {
+
+	private static final long MIN_SAMPLES = 100;
+
+	private static final long UPDATE_INTERVAL = 1000;
+
+	private final MethodStatistics statistics;
+
+	private final double percentile;
+
+	private final double multiplier;
+
+	private final long minTimeout;
+
+	private final long maxTimeout;
+
+	private volatile long timeout;
+
+	private volatile long nextUpdate;
+
+	AdaptiveTimeout(MethodStatistics statistics, double percentile, double multiplier, long minTimeout, long maxTimeout) {
+		this.statistics = statistics;
+		this.percentile = percentile;
+		this.multiplier = multiplier;
+		this.minTimeout = minTimeout;
+		this.maxTimeout = maxTimeout;
+		this.timeout = maxTimeout;
+		statistics.setTimeoutDeadline(maxTimeout);
+	}
+
+	/**
+	 * @return timeout of next call in milliseconds
+	 */
+	public long get() {
+		long now = System.currentTimeMillis();
+		if (now >= nextUpdate) {
+			nextUpdate = now + UPDATE_INTERVAL; // racing threads may compute it twice, which does no harm
+			timeout = compute();
+			statistics.setTimeoutDeadline(timeout);
+		}
+		return timeout;
+	}
+
+	private long compute() {
+		RecentLatency latency = statistics.getRecentLatency();
+		if (latency.getCount() < MIN_SAMPLES) {
+			return maxTimeout;
+		}
+		long computed = (long) Math.ceil(latency.getPercentileMicros(percentile) * multiplier / 1000);
+		return Math.max(minTimeout, Math.min(maxTimeout, computed));
+	}
+
+}
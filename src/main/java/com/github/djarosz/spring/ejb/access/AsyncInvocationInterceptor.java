@@ -0,0 +1,74 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+
+/**
+ * Backs asynchronous variant of business interface. Each method of <var>asyncInterface</var> must have
+ * method with the same name and parameters in <var>businessInterface</var> and return {@link Future}.
+ * Calls are passed to <var>target</var> interceptor on <var>executor</var> thread so results and exceptions are
+ * the same as for synchronous calls, except exceptions are wrapped in {@link java.util.concurrent.ExecutionException}
+ * by {@link Future#get()}.
+ */
+public class AsyncInvocationInterceptor implements MethodInterceptor {
+
+	private final MethodInterceptor target;
+
+	private final ExecutorService executor;
+
+	private final Map<Method, Method> businessMethods = new HashMap<Method, Method>();
+
+	public AsyncInvocationInterceptor(MethodInterceptor target, Class<?> asyncInterface, Class<?> businessInterface,
+			ExecutorService executor) {
+		this.target = target;
+		this.executor = executor;
+
+		for (Method asyncMethod : asyncInterface.getMethods()) {
+			if (!Future.class.equals(asyncMethod.getReturnType())) {
+				throw new IllegalArgumentException("Method " + asyncMethod + " of async interface must return " + Future.class.getName());
+			}
+			try {
+				businessMethods.put(asyncMethod, businessInterface.getMethod(asyncMethod.getName(), asyncMethod.getParameterTypes()));
+			} catch (NoSuchMethodException e) {
+				throw new IllegalArgumentException("Method " + asyncMethod + " has no counterpart in " + businessInterface.getName());
+			}
+		}
+	}
+
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		final Method businessMethod = businessMethods.get(invocation.getMethod());
+		if (businessMethod == null) {
+			if (AopUtils.isToStringMethod(invocation.getMethod())) {
+				return "Asynchronous proxy for remote EJB [" + target + "]";
+			}
+			throw new UnsupportedOperationException("Method " + invocation.getMethod() + " is not supported by asynchronous proxy");
+		}
+
+		final SimpleMethodInvocation businessInvocation =
+				new SimpleMethodInvocation(invocation.getThis(), businessMethod, invocation.getArguments());
+		return executor.submit(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				try {
+					return target.invoke(businessInvocation);
+				} catch (Exception e) {
+					throw e;
+				} catch (Error e) {
+					throw e;
+				} catch (Throwable e) {
+					throw new UndeclaredThrowableException(e);
+				}
+			}
+		});
+	}
+
+}
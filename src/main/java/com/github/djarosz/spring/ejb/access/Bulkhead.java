@@ -0,0 +1,45 @@
+package com.github.djarosz.spring.ejb.access;
+
+/**
+ * Limits number of concurrent calls made through one proxy so slow remote server does not take all
+ * application threads. See {@link ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean#setBulkhead(Bulkhead)}.
+ */
+public interface Bulkhead {
+
+	/**
+	 * Waits (up to implementation specific max wait time) for permission to make a call.
+	 *
+	 * @return <code>false</code> if call was rejected
+	 */
+	boolean tryAcquire() throws InterruptedException;
+
+	/**
+	 * Returns permission acquired with {@link #tryAcquire()}.
+	 *
+	 * @param latencyNanos how long the call took
+	 * @param failed whether call failed because of remote access problem, its latency does not tell how loaded
+	 * server is then
+	 */
+	void release(long latencyNanos, boolean failed);
+
+	/**
+	 * @return number of calls in progress
+	 */
+	int getInFlight();
+
+	/**
+	 * @return number of calls waiting for permission
+	 */
+	int getQueueDepth();
+
+	/**
+	 * @return number of rejected calls
+	 */
+	long getRejectedCount();
+
+	/**
+	 * @return current limit of concurrent calls
+	 */
+	int getLimit();
+
+}
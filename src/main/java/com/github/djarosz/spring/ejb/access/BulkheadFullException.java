@@ -0,0 +1,14 @@
+package com.github.djarosz.spring.ejb.access;
+
+import org.springframework.remoting.RemoteAccessException;
+
+/**
+ * Thrown when remote call is rejected because {@link Bulkhead} limit is reached.
+ */
+public class BulkheadFullException extends RemoteAccessException {
+
+	public BulkheadFullException(String msg) {
+		super(msg);
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks business interface method which result can be cached by
+ * {@link ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean} (see <var>resultCacheSize</var>).
+ * Method must be read only and return the same result for equal arguments.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface CacheResult {
+
+	/**
+	 * @return milliseconds result is cached for
+	 */
+	long ttl();
+
+}
@@ -0,0 +1,217 @@
+package com.github.djarosz.spring.ejb.access;
+
+import static com.github.djarosz.spring.ejb.access.ClassLoaderActionHelper.doInClassLoader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+import org.springframework.remoting.RemoteAccessException;
+
+/**
+ * Single flight execution of identical calls: while call for given {@link InvocationKey} is in flight, other threads
+ * making identical call wait for its result (or exception) instead of calling remote server themselves.
+ * <p>
+ * Each waiting thread gets its own copy of result, as if it made the call itself: immutable results (see
+ * {@link ImmutableTypes}) are shared, arrays of immutables are copied and other results are serialized by the thread
+ * which made the call, before it returns, and deserialized in given class loader by each waiting thread. Exception
+ * is copied the same way and, when it can not be serialized, wrapped in {@link RemoteAccessException} for each waiting
+ * thread. When result can not be serialized, or thread joined when the call was already finishing, waiting thread
+ * makes the call itself.
+ * <p>
+ * Keys are compared in given class loader. Waiting threads are not timed out by themselves, they wait as long as
+ * the call in flight takes.
+ */
+public class CallCoalescer {
+
+	private static final Logger LOGGER = Logger.getLogger(CallCoalescer.class);
+
+	private static final ImmutableTypes IMMUTABLE_TYPES = new ImmutableTypes(null);
+
+	private final ClassLoader classLoader;
+
+	private final ConcurrentMap<InvocationKey, InFlightCall> inFlightCalls = new ConcurrentHashMap<InvocationKey, InFlightCall>();
+
+	public CallCoalescer(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * Executes <var>call</var> or, if identical call is already in flight, waits for its result.
+	 *
+	 * @param statistics statistics to record coalesced call in, may be <code>null</code>
+	 */
+	public Object execute(final InvocationKey key, ClassLoaderActionCallback<Object> call, MethodStatistics statistics) throws Throwable {
+		final InFlightCall inFlightCall = new InFlightCall(classLoader);
+		InFlightCall existing = doInClassLoader(classLoader, new ClassLoaderActionCallback<InFlightCall>() {
+			@Override
+			public InFlightCall execute() {
+				return inFlightCalls.putIfAbsent(key, inFlightCall);
+			}
+		});
+
+		if (existing != null) {
+			if (statistics != null) {
+				statistics.recordCoalesced();
+			}
+			return existing.await(call);
+		}
+
+		try {
+			Object result = call.execute();
+			inFlightCall.complete(result, null);
+			return result;
+		} catch (Throwable e) {
+			inFlightCall.complete(null, e);
+			throw e;
+		} finally {
+			doInClassLoader(classLoader, new ClassLoaderActionCallback<Object>() {
+				@Override
+				public Object execute() {
+					return inFlightCalls.remove(key, inFlightCall);
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return number of distinct calls in flight
+	 */
+	public int getInFlightCount() {
+		return inFlightCalls.size();
+	}
+
+	private static class InFlightCall {
+
+		private final ClassLoader classLoader;
+
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		private final AtomicInteger waiting = new AtomicInteger();
+
+		private Object result;
+
+		private Throwable exception;
+
+		/**
+		 * Serialized result or exception, when it has to be copied for waiting threads.
+		 */
+		private byte[] serialized;
+
+		/**
+		 * Whether waiting threads get (a copy of) result or exception.
+		 */
+		private boolean shared;
+
+		InFlightCall(ClassLoader classLoader) {
+			this.classLoader = classLoader;
+		}
+
+		/**
+		 * Called by thread which made the call, before it returns result to its caller who may modify it.
+		 */
+		void complete(Object result, Throwable exception) {
+			this.result = result;
+			this.exception = exception;
+			if (waiting.get() > 0) {
+				if (exception != null) {
+					serialized = serialize(exception);
+					shared = true;
+				} else if (IMMUTABLE_TYPES.isImmutable(result, classLoader)
+						|| IMMUTABLE_TYPES.isImmutableArray(result, classLoader)) {
+					shared = true;
+				} else {
+					serialized = serialize(result);
+					shared = serialized != null;
+				}
+			}
+			done.countDown();
+		}
+
+		Object await(ClassLoaderActionCallback<Object> call) throws Throwable {
+			waiting.incrementAndGet();
+			try {
+				done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RemoteAccessException("Interrupted while waiting for identical remote call in flight", e);
+			}
+			if (!shared) {
+				return call.execute();
+			}
+			if (exception != null) {
+				Throwable copy = serialized != null ? (Throwable) deserialize(serialized) : null;
+				throw copy != null ? copy : new RemoteAccessException("Identical remote call in flight failed", exception);
+			}
+			if (serialized != null) {
+				Object copy = deserialize(serialized);
+				return copy != null ? copy : call.execute();
+			}
+			return result != null && result.getClass().isArray() ? ImmutableTypes.copyArray(result) : result;
+		}
+
+		private static byte[] serialize(Object obj) {
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				ObjectOutputStream out = new ObjectOutputStream(bytes);
+				out.writeObject(obj);
+				out.close();
+				return bytes.toByteArray();
+			} catch (IOException e) {
+				LOGGER.debug("Could not copy " + obj.getClass().getName() + " for identical calls in flight", e);
+				return null;
+			}
+		}
+
+		/**
+		 * @return copy of serialized object or <code>null</code> if it could not be deserialized
+		 */
+		private Object deserialize(byte[] bytes) {
+			try {
+				ObjectInputStream in = new ClassLoaderObjectInputStream(new ByteArrayInputStream(bytes), classLoader);
+				try {
+					return in.readObject();
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				LOGGER.debug("Could not copy result of identical call in flight", e);
+				return null;
+			} catch (ClassNotFoundException e) {
+				LOGGER.debug("Could not copy result of identical call in flight", e);
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Resolves classes in bean class loader, like results of remote call are.
+	 */
+	private static class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+		private final ClassLoader classLoader;
+
+		ClassLoaderObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+			super(in);
+			this.classLoader = classLoader;
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			try {
+				return Class.forName(desc.getName(), false, classLoader);
+			} catch (ClassNotFoundException e) {
+				return super.resolveClass(desc); // primitive types
+			}
+		}
+	}
+
+}
@@ -0,0 +1,328 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+
+/**
+ * Rejects calls made through one proxy right away while remote server seems to be down, instead of letting each of them
+ * wait for connect or request timeout. See
+ * {@link ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean#setCircuitBreaker(CircuitBreaker)}.
+ * <p>
+ * Breaker is closed at first and records outcome of last <var>windowSize</var> calls. Call fails when it throws
+ * {@link org.springframework.remoting.RemoteAccessException} (application exceptions mean server works) and is slow
+ * when it takes <var>slowCallDuration</var> milliseconds or more. Once at least <var>minimumCalls</var> are recorded and
+ * failure rate reaches <var>failureRateThreshold</var> or slow call rate reaches <var>slowCallRateThreshold</var> breaker
+ * opens and rejects calls with {@link CircuitBreakerOpenException} for <var>openDuration</var> milliseconds. Then it is
+ * half open: <var>halfOpenProbes</var> calls are let through, breaker closes when all of them succeed and opens again
+ * as soon as one of them fails or is slow.
+ * <p>
+ * Each state change starts new generation of breaker. Permitted call gets generation it was admitted in and its outcome
+ * is ignored when state changed meanwhile, so eg slow call admitted while breaker was closed does not count as probe
+ * of half open breaker.
+ * <p>
+ * State changes are logged and published as {@link CircuitBreakerEvent}s.
+ */
+public class CircuitBreaker implements CircuitBreakerMBean, ApplicationEventPublisherAware {
+
+	private static final Logger LOGGER = Logger.getLogger(CircuitBreaker.class);
+
+	/**
+	 * Returned by {@link #tryAcquire()} when call is rejected.
+	 */
+	public static final long REJECTED = -1;
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private String name;
+
+	private int windowSize = 100;
+
+	private int minimumCalls = 20;
+
+	private double failureRateThreshold = 0.5;
+
+	private long slowCallDuration;
+
+	private double slowCallRateThreshold = 0.5;
+
+	private long openDuration = 30000;
+
+	private int halfOpenProbes = 5;
+
+	private ApplicationEventPublisher eventPublisher;
+
+	private volatile State state = State.CLOSED;
+
+	/**
+	 * Incremented after each change of <var>state</var>.
+	 */
+	private volatile long generation;
+
+	private boolean[] failures;
+
+	private boolean[] slowCalls;
+
+	private int position;
+
+	private int recordedCalls;
+
+	private int failureCount;
+
+	private int slowCallCount;
+
+	private long openUntil;
+
+	private int probesStarted;
+
+	private int probesSucceeded;
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	private final AtomicLong opened = new AtomicLong();
+
+	/**
+	 * @return {@link #REJECTED} if call is rejected, otherwise permit which must be passed to
+	 * {@link #onResult(long, long, boolean)} or {@link #onIgnored(long)} with call outcome
+	 */
+	public long tryAcquire() {
+		long permit = generation; // read before state, so permit is stale rather than too new when state changes
+		if (state == State.CLOSED) {
+			return permit;
+		}
+
+		State previous;
+		State current;
+		synchronized (this) {
+			previous = state;
+			if (state == State.OPEN && System.currentTimeMillis() >= openUntil) {
+				probesStarted = 0;
+				probesSucceeded = 0;
+				changeState(State.HALF_OPEN);
+			}
+			if (state == State.CLOSED) {
+				permit = generation; // closed by other thread meanwhile
+			} else if (state == State.HALF_OPEN && probesStarted < halfOpenProbes) {
+				probesStarted++;
+				permit = generation;
+			} else {
+				rejected.incrementAndGet();
+				permit = REJECTED;
+			}
+			current = state;
+		}
+		publish(previous, current);
+		return permit;
+	}
+
+	/**
+	 * Records outcome of permitted call, unless breaker changed state since the call was permitted.
+	 *
+	 * @param permit value returned by {@link #tryAcquire()}
+	 * @param failed whether call failed because of remote access problem
+	 */
+	public void onResult(long permit, long latencyNanos, boolean failed) {
+		boolean slow = slowCallDuration > 0 && latencyNanos >= TimeUnit.MILLISECONDS.toNanos(slowCallDuration);
+		State previous;
+		State current;
+		synchronized (this) {
+			if (permit != generation) {
+				return; // admitted in earlier state
+			}
+			previous = state;
+			if (state == State.CLOSED) {
+				record(failed, slow);
+				if (recordedCalls >= minimumCalls && (getFailureRate() >= failureRateThreshold
+						|| slowCallDuration > 0 && getSlowCallRate() >= slowCallRateThreshold)) {
+					open();
+				}
+			} else if (state == State.HALF_OPEN) {
+				if (failed || slow) {
+					open();
+				} else if (++probesSucceeded >= halfOpenProbes) {
+					close();
+				}
+			}
+			current = state;
+		}
+		publish(previous, current);
+	}
+
+	/**
+	 * Returns permission of call which did not reach remote server (eg was rejected by bulkhead).
+	 *
+	 * @param permit value returned by {@link #tryAcquire()}
+	 */
+	public synchronized void onIgnored(long permit) {
+		if (permit == generation && state == State.HALF_OPEN && probesStarted > probesSucceeded) {
+			probesStarted--;
+		}
+	}
+
+	private void record(boolean failed, boolean slow) {
+		if (failures == null) {
+			failures = new boolean[windowSize];
+			slowCalls = new boolean[windowSize];
+		}
+		if (recordedCalls == windowSize) {
+			failureCount -= failures[position] ? 1 : 0;
+			slowCallCount -= slowCalls[position] ? 1 : 0;
+		} else {
+			recordedCalls++;
+		}
+		failures[position] = failed;
+		slowCalls[position] = slow;
+		failureCount += failed ? 1 : 0;
+		slowCallCount += slow ? 1 : 0;
+		position = (position + 1) % windowSize;
+	}
+
+	private void open() {
+		openUntil = System.currentTimeMillis() + openDuration;
+		opened.incrementAndGet();
+		changeState(State.OPEN);
+	}
+
+	private void close() {
+		position = 0;
+		recordedCalls = 0;
+		failureCount = 0;
+		slowCallCount = 0;
+		changeState(State.CLOSED);
+	}
+
+	/**
+	 * Must be called holding lock. State is written before <var>generation</var>, so thread which reads new generation
+	 * sees new state too.
+	 */
+	private void changeState(State newState) {
+		state = newState;
+		generation++;
+	}
+
+	private void publish(State previous, State current) {
+		if (current == previous) {
+			return;
+		}
+
+		CircuitBreakerEvent event = new CircuitBreakerEvent(this, previous, current);
+		if (current == State.OPEN) {
+			LOGGER.warn(event + ", failure rate " + getFailureRate() + ", slow call rate " + getSlowCallRate());
+		} else {
+			LOGGER.info(event);
+		}
+		if (eventPublisher != null) {
+			eventPublisher.publishEvent(event);
+		}
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	@Override
+	public String getStateName() {
+		return state.name();
+	}
+
+	@Override
+	public synchronized double getFailureRate() {
+		return recordedCalls > 0 ? (double) failureCount / recordedCalls : 0;
+	}
+
+	@Override
+	public synchronized double getSlowCallRate() {
+		return recordedCalls > 0 ? (double) slowCallCount / recordedCalls : 0;
+	}
+
+	@Override
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	@Override
+	public long getOpenedCount() {
+		return opened.get();
+	}
+
+	@Override
+	public void reset() {
+		State previous;
+		synchronized (this) {
+			previous = state;
+			close();
+		}
+		publish(previous, State.CLOSED);
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @param name name used in logs and events, name of proxy bean by default
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
+	/**
+	 * @param windowSize number of last calls failure and slow call rates are computed from, 100 by default
+	 */
+	public void setWindowSize(int windowSize) {
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * @param minimumCalls number of calls which must be recorded before breaker can open, 20 by default
+	 */
+	public void setMinimumCalls(int minimumCalls) {
+		this.minimumCalls = minimumCalls;
+	}
+
+	/**
+	 * @param failureRateThreshold failure rate (0 - 1) at which breaker opens, 0.5 by default
+	 */
+	public void setFailureRateThreshold(double failureRateThreshold) {
+		this.failureRateThreshold = failureRateThreshold;
+	}
+
+	/**
+	 * @param slowCallDuration milliseconds after which call is slow, 0 (default) disables slow call detection
+	 */
+	public void setSlowCallDuration(long slowCallDuration) {
+		this.slowCallDuration = slowCallDuration;
+	}
+
+	/**
+	 * @param slowCallRateThreshold slow call rate (0 - 1) at which breaker opens, 0.5 by default
+	 */
+	public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+		this.slowCallRateThreshold = slowCallRateThreshold;
+	}
+
+	/**
+	 * @param openDuration milliseconds breaker stays open before probe calls are let through, 30000 by default
+	 */
+	public void setOpenDuration(long openDuration) {
+		this.openDuration = openDuration;
+	}
+
+	/**
+	 * @param halfOpenProbes number of probe calls which must succeed to close breaker, 5 by default
+	 */
+	public void setHalfOpenProbes(int halfOpenProbes) {
+		this.halfOpenProbes = halfOpenProbes;
+	}
+
+}
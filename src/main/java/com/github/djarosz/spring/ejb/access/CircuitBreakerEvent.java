@@ -0,0 +1,41 @@
+package com.github.djarosz.spring.ejb.access;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when {@link CircuitBreaker} changes its state.
+ */
+public class CircuitBreakerEvent extends ApplicationEvent {
+
+	private final CircuitBreaker.State previousState;
+
+	private final CircuitBreaker.State state;
+
+	public CircuitBreakerEvent(CircuitBreaker source, CircuitBreaker.State previousState, CircuitBreaker.State state) {
+		super(source);
+		this.previousState = previousState;
+		this.state = state;
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return (CircuitBreaker) getSource();
+	}
+
+	public String getName() {
+		return getCircuitBreaker().getName();
+	}
+
+	public CircuitBreaker.State getPreviousState() {
+		return previousState;
+	}
+
+	public CircuitBreaker.State getState() {
+		return state;
+	}
+
+	@Override
+	public String toString() {
+		return "Circuit breaker [" + getName() + "] " + previousState + " -> " + state;
+	}
+
+}
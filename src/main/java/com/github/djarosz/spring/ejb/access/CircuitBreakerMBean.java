@@ -0,0 +1,40 @@
+package com.github.djarosz.spring.ejb.access;
+
+/**
+ * JMX view of {@link CircuitBreaker}.
+ */
+public interface CircuitBreakerMBean {
+
+	String getName();
+
+	/**
+	 * @return CLOSED, OPEN or HALF_OPEN
+	 */
+	String getStateName();
+
+	/**
+	 * @return failure rate of calls in window (0 - 1)
+	 */
+	double getFailureRate();
+
+	/**
+	 * @return slow call rate of calls in window (0 - 1)
+	 */
+	double getSlowCallRate();
+
+	/**
+	 * @return number of calls rejected while open
+	 */
+	long getRejectedCount();
+
+	/**
+	 * @return number of times breaker opened
+	 */
+	long getOpenedCount();
+
+	/**
+	 * Closes breaker and forgets recorded calls.
+	 */
+	void reset();
+
+}
@@ -0,0 +1,14 @@
+package com.github.djarosz.spring.ejb.access;
+
+import org.springframework.remoting.RemoteAccessException;
+
+/**
+ * Thrown when remote call is rejected because {@link CircuitBreaker} is open.
+ */
+public class CircuitBreakerOpenException extends RemoteAccessException {
+
+	public CircuitBreakerOpenException(String msg) {
+		super(msg);
+	}
+
+}
@@ -14,15 +14,30 @@ public abstract class ClassLoaderActionHelper {
 			return callback.execute();
 		}
 
-		log.trace("Calling class loader: " + currentThread.getContextClassLoader());
+		boolean trace = log.isTraceEnabled();
+		if (trace) {
+			log.trace("Calling class loader: " + callerClassLoader);
+		}
 		try {
 			currentThread.setContextClassLoader(classLoader);
-			log.trace("Switched class loader to: " + currentThread.getContextClassLoader());
+			if (trace) {
+				log.trace("Switched class loader to: " + classLoader);
+			}
 			return callback.execute();
 		} finally {
 			currentThread.setContextClassLoader(callerClassLoader);
-			log.trace("Class loader switched back to: " + currentThread.getContextClassLoader());
+			if (trace) {
+				log.trace("Class loader switched back to: " + callerClassLoader);
+			}
 		}
 	}
 
+	/**
+	 * @return <code>true</code> if given class loader is context class loader of current thread, so callers can
+	 * skip creating callback for {@link #doInClassLoader(ClassLoader, ClassLoaderActionCallback)}
+	 */
+	public static boolean isContextClassLoader(ClassLoader classLoader) {
+		return Thread.currentThread().getContextClassLoader() == classLoader;
+	}
+
 }
@@ -0,0 +1,128 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+import org.springframework.remoting.RemoteAccessException;
+
+/**
+ * Pool of worker threads which context class loader is set once to given class loader. Actions are handed off to
+ * workers instead of switching context class loader of calling thread around each action. One pool is shared by all
+ * users of the same class loader, pools are created by {@link #acquire(ClassLoader, int)} and shut down when last user
+ * calls {@link #release()}.
+ * <p>
+ * Actions executed by thread which already uses the class loader (eg by worker itself) run directly.
+ * <p>
+ * Hand off costs waking up worker thread (tens of microseconds), which is much more than switching context class
+ * loader. Use it when code running in the class loader should always run on the same threads (eg keeps thread local
+ * state such as ORB connections or security login per thread), not to make calls faster.
+ */
+public class ClassLoaderAffineExecutor {
+
+	private static final Logger LOGGER = Logger.getLogger(ClassLoaderAffineExecutor.class);
+
+	private static final Map<ClassLoader, ClassLoaderAffineExecutor> EXECUTORS = new IdentityHashMap<ClassLoader, ClassLoaderAffineExecutor>();
+
+	private final ClassLoader classLoader;
+
+	private final ThreadPoolExecutor executor;
+
+	private int users;
+
+	private ClassLoaderAffineExecutor(ClassLoader classLoader, int poolSize) {
+		this.classLoader = classLoader;
+		this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ClassLoaderThreadFactory(classLoader, "Affine-" + Integer.toHexString(System.identityHashCode(classLoader))));
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Returns executor of given class loader creating it if necessary. Each call must be paired with {@link #release()}.
+	 *
+	 * @param poolSize number of worker threads, used only when executor is created
+	 */
+	public static ClassLoaderAffineExecutor acquire(ClassLoader classLoader, int poolSize) {
+		synchronized (EXECUTORS) {
+			ClassLoaderAffineExecutor executor = EXECUTORS.get(classLoader);
+			if (executor == null) {
+				executor = new ClassLoaderAffineExecutor(classLoader, poolSize);
+				EXECUTORS.put(classLoader, executor);
+				LOGGER.debug("Created executor with " + poolSize + " threads for class loader " + classLoader);
+			}
+			executor.users++;
+			return executor;
+		}
+	}
+
+	/**
+	 * Shuts executor down if this was its last user.
+	 */
+	public void release() {
+		synchronized (EXECUTORS) {
+			if (--users == 0) {
+				EXECUTORS.remove(classLoader);
+				executor.shutdown();
+				LOGGER.debug("Shut down executor of class loader " + classLoader);
+			}
+		}
+	}
+
+	/**
+	 * Runs action on worker thread and waits for its result. If calling thread is interrupted while waiting, worker
+	 * is interrupted too and {@link RemoteAccessException} is thrown.
+	 */
+	public <T> T execute(final ClassLoaderActionCallback<T> action) throws Throwable {
+		if (ClassLoaderActionHelper.isContextClassLoader(classLoader)) {
+			return action.execute();
+		}
+
+		Future<T> future = executor.submit(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				try {
+					return action.execute();
+				} catch (Exception e) {
+					throw e;
+				} catch (Error e) {
+					throw e;
+				} catch (Throwable e) {
+					throw new UndeclaredThrowableException(e);
+				}
+			}
+		});
+
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw e.getCause();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new RemoteAccessException("Interrupted while waiting for call executed in class loader " + classLoader, e);
+		}
+	}
+
+	public ClassLoader getClassLoader() {
+		return classLoader;
+	}
+
+	public int getPoolSize() {
+		return executor.getMaximumPoolSize();
+	}
+
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+
+	public int getQueueSize() {
+		return executor.getQueue().size();
+	}
+
+}
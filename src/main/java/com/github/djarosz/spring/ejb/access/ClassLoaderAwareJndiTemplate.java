@@ -2,6 +2,7 @@ package com.github.djarosz.spring.ejb.access;
 
 import java.util.Properties;
 import javax.naming.Context;
+import javax.naming.NameNotFoundException;
 import javax.naming.NamingException;
 import org.apache.log4j.Logger;
 import org.springframework.jndi.JndiCallback;
@@ -9,6 +10,11 @@ import org.springframework.jndi.JndiTemplate;
 
 /**
  * JndiTemplate Performs all remote calls in specified class loader.
+ * Optionally records latency and errors of JNDI operations in given {@link MethodStatistics}.
+ * <p>
+ * When <var>contextPoolSize</var> is greater than 0 initial contexts are reused between operations
+ * (see {@link JndiContextPool}). Context which failed with other error than {@link NameNotFoundException}
+ * is closed instead of being returned to pool. Pool settings must be set before first operation.
  */
 public class ClassLoaderAwareJndiTemplate extends JndiTemplate {
 
@@ -16,6 +22,16 @@ public class ClassLoaderAwareJndiTemplate extends JndiTemplate {
 
 	private ClassLoader classLoader;
 
+	private MethodStatistics statistics;
+
+	private int contextPoolSize;
+
+	private long contextMaxIdle = 300000;
+
+	private String contextValidationName;
+
+	private volatile JndiContextPool contextPool;
+
 	public ClassLoaderAwareJndiTemplate() {
 	}
 
@@ -32,18 +48,102 @@ public class ClassLoaderAwareJndiTemplate extends JndiTemplate {
 		this.classLoader = classLoader;
 	}
 
+	public void setStatistics(MethodStatistics statistics) {
+		this.statistics = statistics;
+	}
+
+	/**
+	 * @param contextPoolSize max number of idle initial contexts kept for reuse, 0 (default) disables pooling
+	 */
+	public void setContextPoolSize(int contextPoolSize) {
+		this.contextPoolSize = contextPoolSize;
+	}
+
+	/**
+	 * @param contextMaxIdle milliseconds after which idle pooled context is closed, 5 minutes by default
+	 */
+	public void setContextMaxIdle(long contextMaxIdle) {
+		this.contextMaxIdle = contextMaxIdle;
+	}
+
+	/**
+	 * @param contextValidationName name looked up to validate pooled context before it is reused
+	 */
+	public void setContextValidationName(String contextValidationName) {
+		this.contextValidationName = contextValidationName;
+	}
+
+	/**
+	 * @return context pool or <code>null</code> if pooling is disabled
+	 */
+	public JndiContextPool getContextPool() {
+		JndiContextPool pool = contextPool;
+		if (pool == null && contextPoolSize > 0) {
+			synchronized (this) {
+				if (contextPool == null) {
+					contextPool = new JndiContextPool(this, contextPoolSize, contextMaxIdle, contextValidationName);
+				}
+				pool = contextPool;
+			}
+		}
+		return pool;
+	}
+
 	@Override
 	public Object execute(final JndiCallback contextCallback) throws NamingException {
-		return doInClassLoader(new ClassLoaderActionCallback<Object>() {
-			@Override
-			public Object execute() throws Throwable {
-				return ClassLoaderAwareJndiTemplate.super.execute(contextCallback);
+		final JndiContextPool pool = getContextPool();
+		MethodStatistics executeStatistics = statistics;
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			Object result;
+			if (ClassLoaderActionHelper.isContextClassLoader(classLoader)) {
+				result = executeInContext(pool, contextCallback);
+			} else {
+				result = doInClassLoader(new ClassLoaderActionCallback<Object>() {
+					@Override
+					public Object execute() throws Throwable {
+						return executeInContext(pool, contextCallback);
+					}
+				});
 			}
-		});
+			failed = false;
+			return result;
+		} finally {
+			if (executeStatistics != null) {
+				executeStatistics.record(System.nanoTime() - start, failed);
+			}
+		}
+	}
+
+	private Object executeInContext(JndiContextPool pool, JndiCallback contextCallback) throws NamingException {
+		return pool != null ? executePooled(pool, contextCallback) : super.execute(contextCallback);
+	}
+
+	private Object executePooled(JndiContextPool pool, JndiCallback contextCallback) throws NamingException {
+		Context ctx = pool.borrow();
+		boolean reusable = false;
+		try {
+			Object result = contextCallback.doInContext(ctx);
+			reusable = true;
+			return result;
+		} catch (NameNotFoundException e) {
+			reusable = true;
+			throw e;
+		} finally {
+			if (reusable) {
+				pool.release(ctx);
+			} else {
+				pool.discard(ctx);
+			}
+		}
 	}
 
 	@Override
 	protected Context createInitialContext() throws NamingException  {
+		if (ClassLoaderActionHelper.isContextClassLoader(classLoader)) {
+			return super.createInitialContext();
+		}
 		return doInClassLoader(new ClassLoaderActionCallback<Context>() {
 			@Override
 			public Context execute() throws Throwable {
@@ -54,6 +154,10 @@ public class ClassLoaderAwareJndiTemplate extends JndiTemplate {
 
 	@Override
 	public void releaseContext(final Context ctx) {
+		if (ClassLoaderActionHelper.isContextClassLoader(classLoader)) {
+			super.releaseContext(ctx);
+			return;
+		}
 		try {
 			ClassLoaderActionHelper.doInClassLoader(classLoader, new ClassLoaderActionCallback<Object>() {
 				@Override
@@ -2,23 +2,187 @@ package com.github.djarosz.spring.ejb.access;
 
 import static com.github.djarosz.spring.ejb.access.ClassLoaderActionHelper.doInClassLoader;
 
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.MBeanServer;
 import javax.naming.NamingException;
 import org.aopalliance.intercept.MethodInvocation;
+import org.apache.log4j.Logger;
+import org.springframework.aop.framework.ProxyFactory;
 import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.ejb.access.EjbAccessException;
 import org.springframework.ejb.access.SimpleRemoteStatelessSessionProxyFactoryBean;
 import org.springframework.jndi.JndiTemplate;
+import org.springframework.remoting.RemoteAccessException;
+import org.springframework.remoting.RemoteLookupFailureException;
+import org.springframework.remoting.rmi.RmiClientInterceptorUtils;
 
 /**
  * Creates proxy to remote SessionBean using specified class loader. Usually different then then one used
  * by ApplicationContext creating this bean.
+ * <p>
+ * With <var>lookupHomeOnStartup</var> set to <code>false</code> first call pays for home lookup, ORB initialization
+ * and security login. Set <var>warmUpOnStartup</var> to do this in background right after bean is created
+ * (see {@link #warmUp()}), or use {@link ParallelStartupCoordinator} to warm up many proxies on bounded pool with timeout.
+ * <p>
+ * When <var>asyncInterface</var> is set this factory creates proxy implementing it instead of business interface.
+ * Its methods mirror business interface methods but return {@link java.util.concurrent.Future} and calls run on
+ * bounded pool of threads with context class loader already set to <var>classLoader</var>
+ * (see {@link AsyncInvocationInterceptor}). Calls rejected because pool queue is full throw
+ * {@link java.util.concurrent.RejectedExecutionException}.
+ * <p>
+ * Set <var>bulkhead</var> to limit number of concurrent calls made through this proxy (see {@link SemaphoreBulkhead}
+ * and {@link AdaptiveBulkhead}). Calls over the limit fail with {@link BulkheadFullException}.
+ * <p>
+ * Set <var>circuitBreaker</var> to reject calls right away with {@link CircuitBreakerOpenException} while too many
+ * recent calls failed with {@link RemoteAccessException} or were slow (see {@link CircuitBreaker}).
+ * <p>
+ * Calls, errors and latency of each business method and of JNDI operations are recorded in {@link RemoteCallStatistics}.
+ * Set <var>exportStatistics</var> to publish them as JMX MBeans.
+ * <p>
+ * Set <var>jndiContextPoolSize</var> to reuse JNDI initial contexts between home lookups (see {@link JndiContextPool}).
+ * <p>
+ * Set <var>resultCacheSize</var> to cache results of read only methods, either annotated with {@link CacheResult}
+ * or listed in <var>cachedMethods</var> (method name to TTL in milliseconds, overrides annotation). Cache hits
+ * do not reach remote server and are not recorded in method statistics. See {@link ResultCache}.
+ * <p>
+ * Set <var>coalesceCalls</var> so identical concurrent calls of idempotent methods (annotated with {@link Idempotent}
+ * or listed in <var>coalescedMethods</var>) wait for single remote call instead of each making its own
+ * (see {@link CallCoalescer}). Waiting calls get their own copies of result or exception of the remote call, unless
+ * it is immutable, so callers may modify results as usual. Coalesced calls are counted in method statistics.
+ * <p>
+ * Set <var>homeRefreshInterval</var> to look up home again (and validate it by calling <code>create()</code>) every
+ * that many milliseconds in background thread and swap it in atomically. Calls never wait for lookup while home is
+ * available, only first call (when home was not looked up yet) and calls retried after connect failure (when
+ * <var>refreshHomeOnConnectFailure</var> is set) look it up themselves, sharing single lookup.
+ * Can not be combined with <var>cacheSessionBean</var>.
+ * <p>
+ * By default context class loader of calling thread is switched to <var>classLoader</var> around each call. With
+ * <var>classLoaderAffineExecution</var> calls are instead handed off to pool of threads permanently using
+ * <var>classLoader</var>, shared by all beans using it (see {@link ClassLoaderAffineExecutor}).
+ * <p>
+ * Set <var>lifecycleManager</var> so <var>classLoader</var> is released (its ORB shut down, classes unloaded) once
+ * this and all other beans using it are destroyed (see {@link ClassLoaderLifecycleManager}).
+ * <p>
+ * Stub methods are resolved once per stub class (see {@link StubMethodTable}), table is rebuilt when home is refreshed.
  */
-public class ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean extends SimpleRemoteStatelessSessionProxyFactoryBean {
+public class ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean extends SimpleRemoteStatelessSessionProxyFactoryBean
+		implements BeanNameAware {
+
+	private static final Logger LOGGER = Logger.getLogger(ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean.class);
 
 	protected ClassLoader classLoader;
 
 	private Properties jndiEnvironment;
 
+	private boolean lookupHomeOnStartup = true;
+
+	private boolean warmUpOnStartup;
+
+	private Executor warmUpExecutor;
+
+	private Class asyncInterface;
+
+	private ExecutorService asyncExecutor;
+
+	private boolean ownAsyncExecutor;
+
+	private int asyncPoolSize = 10;
+
+	private int asyncQueueCapacity = 100;
+
+	private Object asyncProxy;
+
+	private Bulkhead bulkhead;
+
+	private CircuitBreaker circuitBreaker;
+
+	private String beanName;
+
+	private RemoteCallStatistics statistics;
+
+	private boolean exportStatistics;
+
+	private MBeanServer mbeanServer;
+
+	private int jndiContextPoolSize;
+
+	private long jndiContextMaxIdle = 300000;
+
+	private String jndiContextValidationName;
+
+	private ClassLoaderAwareJndiTemplate classLoaderAwareJndiTemplate;
+
+	private int resultCacheSize;
+
+	private ResultCache.EvictionPolicy resultCacheEviction = ResultCache.EvictionPolicy.LRU;
+
+	private Properties cachedMethods = new Properties();
+
+	private ResultCache resultCache;
+
+	private Map<Method, Long> cacheTtls;
+
+	private boolean coalesceCalls;
+
+	private String[] coalescedMethods = new String[0];
+
+	private Set<Method> coalescedMethodSet;
+
+	private CallCoalescer callCoalescer;
+
+	private long homeRefreshInterval;
+
+	private ScheduledExecutorService homeRefreshExecutor;
+
+	private boolean ownHomeRefreshExecutor;
+
+	private ScheduledFuture<?> homeRefreshTask;
+
+	private boolean cacheSessionBean;
+
+	private volatile ResolvedHome resolvedHome;
+
+	private final Object homeRefreshMonitor = new Object();
+
+	private final AtomicLong homeRefreshes = new AtomicLong();
+
+	private final AtomicLong homeRefreshFailures = new AtomicLong();
+
+	private boolean classLoaderAffineExecution;
+
+	private int affinePoolSize = 20;
+
+	private ClassLoaderAffineExecutor affineExecutor;
+
+	private ClassLoaderLifecycleManager lifecycleManager;
+
+	private volatile StubMethodTable stubMethodTable;
+
+	private Class<?> ejbObjectClass;
+
+	private Class<?> createExceptionClass;
+
 	public void setClassLoader(ClassLoader classLoader) {
 		this.classLoader = classLoader;
 	}
@@ -43,19 +207,758 @@ public class ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean extends Simp
 			throw new BeanCreationException("Required property 'classLoader' not set");
 		}
 
+		// registered before home lookup, so class loader can not be released while this bean is being created
+		if (lifecycleManager != null) {
+			lifecycleManager.register(classLoader, this);
+		}
+		boolean initialized = false;
+		try {
+			initialize();
+			initialized = true;
+		} finally {
+			if (!initialized && lifecycleManager != null) {
+				lifecycleManager.unregister(classLoader, this);
+			}
+		}
+	}
+
+	private void initialize() throws NamingException {
+		if (circuitBreaker != null && circuitBreaker.getName() == null) {
+			circuitBreaker.setName(beanName != null ? beanName : getJndiName());
+		}
+		if (homeRefreshInterval > 0 && cacheSessionBean) {
+			throw new BeanCreationException("Properties 'homeRefreshInterval' and 'cacheSessionBean' can not be used together");
+		}
+
 		setBeanClassLoader(classLoader); // This should called before call to supper
-		super.setJndiTemplate(new ClassLoaderAwareJndiTemplate(classLoader, (Properties) jndiEnvironment.clone()));
+		Properties environment = (Properties) jndiEnvironment.clone();
+		customizeJndiEnvironment(environment);
+		ClassLoaderAwareJndiTemplate jndiTemplate = new ClassLoaderAwareJndiTemplate(classLoader, environment);
+		jndiTemplate.setContextPoolSize(jndiContextPoolSize);
+		jndiTemplate.setContextMaxIdle(jndiContextMaxIdle);
+		jndiTemplate.setContextValidationName(jndiContextValidationName);
+		if (getBusinessInterface() != null) {
+			statistics = new RemoteCallStatistics(beanName != null ? beanName : getJndiName(), getBusinessInterface());
+			statistics.setJndiContextPool(jndiTemplate.getContextPool());
+			statistics.setCircuitBreaker(circuitBreaker);
+			jndiTemplate.setStatistics(statistics.getJndiStatistics());
+		}
+		classLoaderAwareJndiTemplate = jndiTemplate;
+		if (resultCacheSize > 0 && getBusinessInterface() != null) {
+			createResultCache();
+		}
+		if (coalesceCalls && getBusinessInterface() != null) {
+			createCallCoalescer();
+		}
+		ejbObjectClass = loadOptionalClass("javax.ejb.EJBObject");
+		createExceptionClass = loadOptionalClass("javax.ejb.CreateException");
+		super.setJndiTemplate(jndiTemplate);
 		super.afterPropertiesSet();
+		afterInterceptorInitialized();
+
+		if (exportStatistics) {
+			statistics.registerMBeans(mbeanServer != null ? mbeanServer : ManagementFactory.getPlatformMBeanServer());
+		}
+
+		if (asyncInterface != null) {
+			createAsyncProxy();
+		}
+
+		if (warmUpOnStartup && !lookupHomeOnStartup) {
+			scheduleWarmUp();
+		}
+
+		if (homeRefreshInterval > 0) {
+			scheduleHomeRefresh();
+		}
+
+		if (classLoaderAffineExecution) {
+			affineExecutor = ClassLoaderAffineExecutor.acquire(classLoader, affinePoolSize);
+		}
+	}
+
+	private Class<?> loadOptionalClass(String className) {
+		try {
+			return Class.forName(className, false, classLoader);
+		} catch (ClassNotFoundException e) {
+			return null;
+		}
+	}
+
+	private void scheduleHomeRefresh() {
+		if (homeRefreshExecutor == null) {
+			homeRefreshExecutor = new ScheduledThreadPoolExecutor(1, new ClassLoaderThreadFactory(classLoader, "HomeRefresh-" + getJndiName()));
+			ownHomeRefreshExecutor = true;
+		}
+		// random initial delay, so beans created together do not refresh together
+		long initialDelay = homeRefreshInterval / 2 + new Random().nextInt((int) Math.min(Integer.MAX_VALUE, homeRefreshInterval / 2 + 1));
+		homeRefreshTask = homeRefreshExecutor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				refreshHomeInBackground();
+			}
+		}, initialDelay, homeRefreshInterval, TimeUnit.MILLISECONDS);
+	}
+
+	private void refreshHomeInBackground() {
+		try {
+			doInClassLoader(classLoader, new ClassLoaderActionCallback<Object>() {
+				@Override
+				public Object execute() throws Throwable {
+					refreshHome();
+					return null;
+				}
+			});
+		} catch (Throwable e) {
+			homeRefreshFailures.incrementAndGet();
+			LOGGER.warn("Background refresh of remote EJB [" + getJndiName() + "] home failed, keeping current home", e);
+		}
+	}
+
+	private void createResultCache() {
+		Map<Method, Long> ttls = new HashMap<Method, Long>();
+		for (Method method : getBusinessInterface().getMethods()) {
+			String configuredTtl = cachedMethods.getProperty(method.getName());
+			CacheResult annotation = method.getAnnotation(CacheResult.class);
+			if (configuredTtl != null) {
+				ttls.put(method, Long.valueOf(configuredTtl.trim()));
+			} else if (annotation != null) {
+				ttls.put(method, annotation.ttl());
+			}
+		}
+
+		if (ttls.isEmpty()) {
+			LOGGER.warn("Result cache of remote EJB [" + getJndiName() + "] enabled but no cached methods found");
+			return;
+		}
+		cacheTtls = ttls;
+		resultCache = new ResultCache(resultCacheSize, resultCacheEviction);
+		if (statistics != null) {
+			statistics.setResultCache(resultCache);
+		}
+	}
+
+	private void createCallCoalescer() {
+		List<String> names = Arrays.asList(coalescedMethods);
+		Set<Method> methods = new HashSet<Method>();
+		for (Method method : getBusinessInterface().getMethods()) {
+			if (names.contains(method.getName()) || method.isAnnotationPresent(Idempotent.class)) {
+				methods.add(method);
+			}
+		}
+
+		if (methods.isEmpty()) {
+			LOGGER.warn("Call coalescing of remote EJB [" + getJndiName() + "] enabled but no idempotent methods found");
+			return;
+		}
+		coalescedMethodSet = methods;
+		callCoalescer = new CallCoalescer(classLoader);
+	}
+
+	private void createAsyncProxy() {
+		if (asyncExecutor == null) {
+			asyncExecutor = new ThreadPoolExecutor(asyncPoolSize, asyncPoolSize, 60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(asyncQueueCapacity), new ClassLoaderThreadFactory(classLoader, "Async-" + getJndiName()));
+			ownAsyncExecutor = true;
+		}
+		asyncProxy = new ProxyFactory(asyncInterface, new AsyncInvocationInterceptor(this, asyncInterface, getBusinessInterface(), asyncExecutor))
+				.getProxy(classLoader);
+	}
+
+	@Override
+	public Object getObject() {
+		return asyncProxy != null ? asyncProxy : super.getObject();
+	}
+
+	@Override
+	public Class getObjectType() {
+		return asyncInterface != null ? asyncInterface : super.getObjectType();
+	}
+
+	@Override
+	public void destroy() {
+		super.destroy();
+		if (statistics != null) {
+			statistics.unregisterMBeans();
+		}
+		if (ownAsyncExecutor) {
+			asyncExecutor.shutdown();
+		}
+		if (classLoaderAwareJndiTemplate != null && classLoaderAwareJndiTemplate.getContextPool() != null) {
+			classLoaderAwareJndiTemplate.getContextPool().clear();
+		}
+		if (homeRefreshTask != null) {
+			homeRefreshTask.cancel(false);
+		}
+		if (ownHomeRefreshExecutor) {
+			homeRefreshExecutor.shutdownNow();
+		}
+		if (affineExecutor != null) {
+			affineExecutor.release();
+			affineExecutor = null;
+		}
+		if (lifecycleManager != null) {
+			lifecycleManager.unregister(classLoader, this);
+		}
+	}
+
+	/**
+	 * With background refresh looks up home, validates it and swaps it in. Only one lookup runs at a time,
+	 * threads calling this while lookup is running wait for it and do not look up again.
+	 */
+	@Override
+	protected void refreshHome() throws NamingException {
+		if (homeRefreshInterval <= 0) {
+			super.refreshHome();
+			stubMethodTable = null;
+			return;
+		}
+
+		ResolvedHome current = resolvedHome;
+		synchronized (homeRefreshMonitor) {
+			if (resolvedHome != current) {
+				return; // refreshed by other thread while this one was waiting
+			}
+			Object home = lookup();
+			Method createMethod = getCreateMethod(home);
+			if (createMethod == null) {
+				getStubMethodTable(home);
+			} else {
+				try {
+					Object stub = createMethod.invoke(home, (Object[]) null);
+					getStubMethodTable(stub).remove(stub);
+				} catch (IllegalAccessException e) {
+					throw new EjbAccessException("Could not access EJB home create() method", e);
+				} catch (InvocationTargetException e) {
+					throw new EjbAccessException("Validation of refreshed EJB home [" + getJndiName() + "] failed", e.getTargetException());
+				}
+			}
+			resolvedHome = new ResolvedHome(home, createMethod);
+			homeRefreshes.incrementAndGet();
+		}
+	}
+
+	@Override
+	protected Object getHome() throws NamingException {
+		if (homeRefreshInterval <= 0) {
+			return super.getHome();
+		}
+		return getResolvedHome().home;
+	}
+
+	private ResolvedHome getResolvedHome() throws NamingException {
+		ResolvedHome home = resolvedHome;
+		if (home == null) {
+			refreshHome();
+			home = resolvedHome;
+		}
+		return home;
+	}
+
+	/**
+	 * With background refresh uses home and create method swapped in together, without locking.
+	 */
+	@Override
+	protected Object create() throws NamingException, InvocationTargetException {
+		if (homeRefreshInterval <= 0) {
+			return super.create();
+		}
+
+		ResolvedHome home = getResolvedHome();
+		if (home.createMethod == null) {
+			return home.home;
+		}
+		try {
+			return home.createMethod.invoke(home.home, (Object[]) null);
+		} catch (IllegalAccessException e) {
+			throw new EjbAccessException("Could not access EJB home create() method", e);
+		}
+	}
+
+	/**
+	 * Called with copy of <var>jndiEnvironment</var> before JNDI template is created (and before home is looked up).
+	 */
+	protected void customizeJndiEnvironment(Properties environment) {
+	}
+
+	/**
+	 * Called once interceptor is initialized (and home looked up on startup), before statistics are exported and
+	 * warm up is scheduled.
+	 */
+	protected void afterInterceptorInitialized() throws NamingException {
+	}
+
+	private void scheduleWarmUp() {
+		Runnable warmUpTask = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					warmUp();
+				} catch (Exception e) {
+					LOGGER.warn("Warm up of remote EJB [" + getJndiName() + "] failed, it will be retried on first call", e);
+				}
+			}
+		};
+
+		if (warmUpExecutor != null) {
+			warmUpExecutor.execute(warmUpTask);
+		} else {
+			Thread thread = new Thread(warmUpTask, "WarmUp-" + getJndiName());
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Looks up home and creates (and removes) session bean reference in bean class loader, so ORB initialization, naming
+	 * and security login are done before first business method call.
+	 */
+	public void warmUp() throws Exception {
+		long start = System.currentTimeMillis();
+		try {
+			doInClassLoader(classLoader, new ClassLoaderActionCallback<Object>() {
+				@Override
+				public Object execute() throws Throwable {
+					refreshHome();
+					Object ejb = newSessionBeanInstance();
+					getStubMethodTable(ejb).remove(ejb); // created just to validate home, remote instance is not kept
+					return null;
+				}
+			});
+		} catch (Exception e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new ClassLoaderActionRuntimeException(e);
+		}
+		LOGGER.info("Remote EJB [" + getJndiName() + "] warmed up in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * @param classLoaderAffineExecution when <code>true</code> calls are handed off to threads which context class loader
+	 * is <var>classLoader</var> (see {@link ClassLoaderAffineExecutor}) instead of switching class loader of calling thread
+	 */
+	public void setClassLoaderAffineExecution(boolean classLoaderAffineExecution) {
+		this.classLoaderAffineExecution = classLoaderAffineExecution;
+	}
+
+	/**
+	 * @param affinePoolSize number of threads of class loader affine executor, 20 by default. Executor is shared by all
+	 * beans using the same class loader and size given by first of them is used.
+	 */
+	public void setAffinePoolSize(int affinePoolSize) {
+		this.affinePoolSize = affinePoolSize;
+	}
+
+	/**
+	 * @param lifecycleManager manager told this bean uses <var>classLoader</var> until it is destroyed, so the class
+	 * loader is not released before (see {@link ClassLoaderLifecycleManager})
+	 */
+	public void setLifecycleManager(ClassLoaderLifecycleManager lifecycleManager) {
+		this.lifecycleManager = lifecycleManager;
+	}
+
+	protected ClassLoaderLifecycleManager getLifecycleManager() {
+		return lifecycleManager;
+	}
+
+	/**
+	 * @param homeRefreshInterval milliseconds between background home refreshes, 0 (default) disables them
+	 */
+	public void setHomeRefreshInterval(long homeRefreshInterval) {
+		this.homeRefreshInterval = homeRefreshInterval;
+	}
+
+	/**
+	 * @param homeRefreshExecutor executor running background home refresh, by default single thread executor is created
+	 */
+	public void setHomeRefreshExecutor(ScheduledExecutorService homeRefreshExecutor) {
+		this.homeRefreshExecutor = homeRefreshExecutor;
+	}
+
+	public long getHomeRefreshCount() {
+		return homeRefreshes.get();
+	}
+
+	public long getHomeRefreshFailureCount() {
+		return homeRefreshFailures.get();
+	}
+
+	@Override
+	public void setCacheSessionBean(boolean cacheSessionBean) {
+		super.setCacheSessionBean(cacheSessionBean);
+		this.cacheSessionBean = cacheSessionBean;
+	}
+
+	/**
+	 * @param asyncInterface interface mirroring business interface with methods returning {@link java.util.concurrent.Future}
+	 */
+	public void setAsyncInterface(Class asyncInterface) {
+		this.asyncInterface = asyncInterface;
+	}
+
+	/**
+	 * @param asyncExecutor executor running asynchronous calls, when not set bounded pool is created
+	 * (see <var>asyncPoolSize</var> and <var>asyncQueueCapacity</var>)
+	 */
+	public void setAsyncExecutor(ExecutorService asyncExecutor) {
+		this.asyncExecutor = asyncExecutor;
+	}
+
+	public void setAsyncPoolSize(int asyncPoolSize) {
+		this.asyncPoolSize = asyncPoolSize;
+	}
+
+	public void setAsyncQueueCapacity(int asyncQueueCapacity) {
+		this.asyncQueueCapacity = asyncQueueCapacity;
+	}
+
+	public RemoteCallStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * @param exportStatistics when <code>true</code> statistics are registered as JMX MBeans
+	 */
+	public void setExportStatistics(boolean exportStatistics) {
+		this.exportStatistics = exportStatistics;
+	}
+
+	/**
+	 * @param mbeanServer server to register statistics MBeans in, platform MBean server by default
+	 */
+	public void setMbeanServer(MBeanServer mbeanServer) {
+		this.mbeanServer = mbeanServer;
+	}
+
+	/**
+	 * @param jndiContextPoolSize max number of JNDI initial contexts kept for reuse, 0 (default) disables pooling
+	 */
+	public void setJndiContextPoolSize(int jndiContextPoolSize) {
+		this.jndiContextPoolSize = jndiContextPoolSize;
+	}
+
+	/**
+	 * @param jndiContextMaxIdle milliseconds after which idle pooled context is closed, 5 minutes by default
+	 */
+	public void setJndiContextMaxIdle(long jndiContextMaxIdle) {
+		this.jndiContextMaxIdle = jndiContextMaxIdle;
+	}
+
+	/**
+	 * @param jndiContextValidationName name looked up to validate pooled context before reuse, eg home JNDI name
+	 */
+	public void setJndiContextValidationName(String jndiContextValidationName) {
+		this.jndiContextValidationName = jndiContextValidationName;
+	}
+
+	/**
+	 * @param resultCacheSize max number of cached results, 0 (default) disables result cache
+	 */
+	public void setResultCacheSize(int resultCacheSize) {
+		this.resultCacheSize = resultCacheSize;
+	}
+
+	/**
+	 * @param resultCacheEviction which entry is evicted when result cache is full, LRU by default
+	 */
+	public void setResultCacheEviction(ResultCache.EvictionPolicy resultCacheEviction) {
+		this.resultCacheEviction = resultCacheEviction;
+	}
+
+	/**
+	 * @param cachedMethods business method name to milliseconds its results are cached for
+	 */
+	public void setCachedMethods(Properties cachedMethods) {
+		this.cachedMethods = cachedMethods;
+	}
+
+	/**
+	 * @param coalesceCalls when <code>true</code> identical concurrent calls of idempotent methods share one remote call
+	 */
+	public void setCoalesceCalls(boolean coalesceCalls) {
+		this.coalesceCalls = coalesceCalls;
+	}
+
+	/**
+	 * @param coalescedMethods names of idempotent business methods, in addition to methods annotated with {@link Idempotent}
+	 */
+	public void setCoalescedMethods(String[] coalescedMethods) {
+		this.coalescedMethods = coalescedMethods;
+	}
+
+	/**
+	 * @return result cache or <code>null</code> if results are not cached
+	 */
+	public ResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * @return JNDI context pool or <code>null</code> if pooling is disabled
+	 */
+	public JndiContextPool getJndiContextPool() {
+		return classLoaderAwareJndiTemplate != null ? classLoaderAwareJndiTemplate.getContextPool() : null;
+	}
+
+	@Override
+	public void setBeanName(String name) {
+		this.beanName = name;
+	}
+
+	public void setBulkhead(Bulkhead bulkhead) {
+		this.bulkhead = bulkhead;
+	}
+
+	/**
+	 * @param circuitBreaker breaker used only by this proxy
+	 */
+	public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	public Bulkhead getBulkhead() {
+		return bulkhead;
+	}
+
+	@Override
+	public void setLookupHomeOnStartup(boolean lookupHomeOnStartup) {
+		super.setLookupHomeOnStartup(lookupHomeOnStartup);
+		this.lookupHomeOnStartup = lookupHomeOnStartup;
+	}
+
+	/**
+	 * @param warmUpOnStartup when <code>true</code> and <var>lookupHomeOnStartup</var> is <code>false</code>
+	 * {@link #warmUp()} is run in background after bean is initialized
+	 */
+	public void setWarmUpOnStartup(boolean warmUpOnStartup) {
+		this.warmUpOnStartup = warmUpOnStartup;
+	}
+
+	/**
+	 * @param warmUpExecutor executor running warm up, by default new daemon thread is started
+	 */
+	public void setWarmUpExecutor(Executor warmUpExecutor) {
+		this.warmUpExecutor = warmUpExecutor;
+	}
+
+	@Override
+	public Object invoke(final MethodInvocation invocation) throws Throwable {
+		final Long ttl = cacheTtls != null ? cacheTtls.get(invocation.getMethod()) : null;
+		boolean coalesce = coalescedMethodSet != null && coalescedMethodSet.contains(invocation.getMethod());
+		if (ttl == null && !coalesce) {
+			return invokeRemote(invocation);
+		}
+
+		// keys are computed and compared in bean class loader, so arguments of isolated types hash correctly
+		final InvocationKey key = doInClassLoader(classLoader, new ClassLoaderActionCallback<InvocationKey>() {
+			@Override
+			public InvocationKey execute() {
+				return new InvocationKey(invocation.getMethod(), invocation.getArguments());
+			}
+		});
+
+		if (ttl != null) {
+			ResultCache.Entry entry = doInClassLoader(classLoader, new ClassLoaderActionCallback<ResultCache.Entry>() {
+				@Override
+				public ResultCache.Entry execute() {
+					return resultCache.get(key);
+				}
+			});
+			if (entry != null) {
+				return entry.getResult();
+			}
+		}
+
+		final Object result = coalesce ? invokeCoalesced(invocation, key) : invokeRemote(invocation);
+
+		if (ttl != null) {
+			doInClassLoader(classLoader, new ClassLoaderActionCallback<Object>() {
+				@Override
+				public Object execute() {
+					resultCache.put(key, result, ttl);
+					return null;
+				}
+			});
+		}
+		return result;
+	}
+
+	private Object invokeCoalesced(final MethodInvocation invocation, InvocationKey key) throws Throwable {
+		return callCoalescer.execute(key, new ClassLoaderActionCallback<Object>() {
+			@Override
+			public Object execute() throws Throwable {
+				return invokeRemote(invocation);
+			}
+		}, getMethodStatistics(invocation));
+	}
+
+	private Object invokeRemote(MethodInvocation invocation) throws Throwable {
+		if (circuitBreaker == null) {
+			return invokeRecordingStatistics(invocation);
+		}
+
+		long permit = circuitBreaker.tryAcquire();
+		if (permit == CircuitBreaker.REJECTED) {
+			throw new CircuitBreakerOpenException("Circuit breaker of remote EJB [" + getJndiName() + "] is "
+					+ circuitBreaker.getState() + ", call rejected");
+		}
+		long start = System.nanoTime();
+		boolean failed = false;
+		boolean ignored = false;
+		try {
+			return invokeRecordingStatistics(invocation);
+		} catch (BulkheadFullException e) {
+			ignored = true;
+			throw e;
+		} catch (RemoteAccessException e) {
+			failed = true;
+			throw e;
+		} finally {
+			if (ignored) {
+				circuitBreaker.onIgnored(permit);
+			} else {
+				circuitBreaker.onResult(permit, System.nanoTime() - start, failed);
+			}
+		}
+	}
+
+	private Object invokeRecordingStatistics(MethodInvocation invocation) throws Throwable {
+		MethodStatistics methodStatistics = getMethodStatistics(invocation);
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			Object result = invokeWithinBulkhead(invocation);
+			failed = false;
+			return result;
+		} finally {
+			if (methodStatistics != null) {
+				methodStatistics.record(System.nanoTime() - start, failed);
+			}
+		}
+	}
+
+	private Object invokeWithinBulkhead(MethodInvocation invocation) throws Throwable {
+		if (bulkhead == null) {
+			return invokeInClassLoader(invocation);
+		}
+
+		boolean acquired;
+		try {
+			acquired = bulkhead.tryAcquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			acquired = false;
+		}
+		if (!acquired) {
+			throw new BulkheadFullException("Too many concurrent calls to remote EJB [" + getJndiName() + "]: in flight "
+					+ bulkhead.getInFlight() + ", limit " + bulkhead.getLimit());
+		}
+
+		long start = System.nanoTime();
+		boolean failed = false;
+		try {
+			return invokeInClassLoader(invocation);
+		} catch (RemoteAccessException e) {
+			failed = true;
+			throw e;
+		} finally {
+			bulkhead.release(System.nanoTime() - start, failed);
+		}
+	}
+
+	/**
+	 * @return statistics of invoked business method or <code>null</code> if it is not business method
+	 */
+	protected MethodStatistics getMethodStatistics(MethodInvocation invocation) {
+		return statistics != null ? statistics.get(invocation.getMethod()) : null;
+	}
+
+	private Object invokeInClassLoader(final MethodInvocation invocation) throws Throwable {
+		if (affineExecutor == null) {
+			return super.invoke(invocation);
+		}
+		return affineExecutor.execute(new ClassLoaderActionCallback<Object>() {
+			@Override
+			public Object execute() throws Throwable {
+				return ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean.super.invoke(invocation);
+			}
+		});
 	}
 
 	@Override
 	protected Object doInvoke(final MethodInvocation invocation) throws Throwable {
+		if (ClassLoaderActionHelper.isContextClassLoader(classLoader)) {
+			return invokeStub(invocation);
+		}
 		return doInClassLoader(classLoader, new ClassLoaderActionCallback<Object>() {
 			@Override
 			public Object execute() throws Throwable {
-				return ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean.super.doInvoke(invocation);
+				return invokeStub(invocation);
 			}
 		});
 	}
 
+	/**
+	 * Does what {@link org.springframework.ejb.access.SimpleRemoteSlsbInvokerInterceptor#doInvoke(MethodInvocation)}
+	 * does, including exception translation, but dispatches to stub through {@link StubMethodTable}.
+	 */
+	private Object invokeStub(MethodInvocation invocation) throws Throwable {
+		Object ejb = null;
+		StubMethodTable table = null;
+		try {
+			ejb = getSessionBeanInstance();
+			table = getStubMethodTable(ejb);
+			return table.invoke(ejb, invocation);
+		} catch (NamingException e) {
+			throw new RemoteLookupFailureException("Failed to locate remote EJB [" + getJndiName() + "]", e);
+		} catch (InvocationTargetException e) {
+			Throwable targetException = e.getTargetException();
+			if (targetException instanceof RemoteException) {
+				RemoteException remoteException = (RemoteException) targetException;
+				throw RmiClientInterceptorUtils.convertRmiAccessException(invocation.getMethod(), remoteException,
+						isConnectFailure(remoteException), getJndiName());
+			} else if (createExceptionClass != null && createExceptionClass.isInstance(targetException)) {
+				throw RmiClientInterceptorUtils.convertRmiAccessException(invocation.getMethod(), targetException,
+						"Could not create remote EJB [" + getJndiName() + "]");
+			}
+			throw targetException;
+		} finally {
+			if (table != null && !cacheSessionBean) {
+				table.remove(ejb);
+			}
+		}
+	}
+
+	/**
+	 * @return method table of stub class, built when stub class changed (or home was refreshed)
+	 */
+	private StubMethodTable getStubMethodTable(Object stub) {
+		StubMethodTable table = stubMethodTable;
+		if (table == null || !table.isFor(stub.getClass())) {
+			boolean removable = ejbObjectClass != null && ejbObjectClass.isInstance(stub);
+			table = new StubMethodTable(getBusinessInterface(), stub.getClass(), removable);
+			stubMethodTable = table;
+		}
+		return table;
+	}
+
+	/**
+	 * Home and its create method (<code>null</code> for EJB 3 home serving as component), swapped in together.
+	 */
+	private static class ResolvedHome {
+
+		private final Object home;
+
+		private final Method createMethod;
+
+		ResolvedHome(Object home, Method createMethod) {
+			this.home = home;
+			this.createMethod = createMethod;
+		}
+	}
+
 }
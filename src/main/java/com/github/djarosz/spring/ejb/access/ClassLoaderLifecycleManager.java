@@ -0,0 +1,467 @@
+package com.github.djarosz.spring.ejb.access;
+
+import static com.github.djarosz.spring.ejb.access.ClassLoaderActionHelper.doInClassLoader;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Timer;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import org.omg.CORBA.ORB;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Tracks isolated class loaders (see {@link LibDirClassLoaderFactoryBean#setLifecycleManager(ClassLoaderLifecycleManager)})
+ * and proxy beans using them (see {@link ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean#setLifecycleManager(ClassLoaderLifecycleManager)})
+ * and releases class loaders nobody uses, so their classes can be unloaded:
+ * <pre>
+ *	&lt;bean id="lifecycleManager" class="com.github.djarosz.spring.ejb.access.ClassLoaderLifecycleManager"&gt;
+ *		&lt;property name="idleTimeout" value="300000"/&gt;
+ *		&lt;property name="orbAccessor" value="com.ibm.ws.orb.GlobalORBFactory.globalORB"/&gt;
+ *	&lt;/bean&gt;
+ * </pre>
+ * Class loader is released once all proxy beans using it were destroyed (or none was ever created) and
+ * <var>idleTimeout</var> milliseconds passed. Loader used by live proxy is never released, as proxy can not work without it.
+ * Proxy registers as user at the start of its initialization, registering as user of class loader which was already
+ * released fails with {@link IllegalStateException}.
+ * Releasing class loader:
+ * <ol>
+ * <li>shuts down and destroys ORB returned by <var>orbAccessor</var> (static method called in the class loader), unless
+ * class declaring it is loaded by parent class loader (eg shared layer), as other class loaders still use that ORB</li>
+ * <li>cancels timers, shuts down executors and destroys other resources added by {@link #addResource(ClassLoader, Object)}</li>
+ * <li>drops {@link ClassLoaderUtilDelegate} delegate and resource bundles of the class loader</li>
+ * <li>resets context class loader of threads still using it to its parent and warns about threads started by its classes</li>
+ * <li>closes jar files of {@link LibDirClassLoader} (see {@link LibDirClassLoader#release()}) or closes other class
+ * loader if it is {@link Closeable}</li>
+ * </ol>
+ * Released class loaders are then checked on each of next <var>verifyAttempts</var> checks (by default after forcing GC)
+ * to be garbage collected. Unloaded ones are counted with metaspace they used, estimated from number of classes they
+ * defined as in {@link LibDirClassLoaderFactoryBean#getLayerReport()}, loaders still reachable are reported as leaked.
+ */
+public class ClassLoaderLifecycleManager implements InitializingBean, DisposableBean, ClassLoaderLifecycleManagerMBean {
+
+	private static final Logger LOGGER = Logger.getLogger(ClassLoaderLifecycleManager.class);
+
+	private static final int MAX_REPORTED_RELEASES = 20;
+
+	private long idleTimeout = 300000;
+
+	private long checkInterval = 60000;
+
+	private String orbAccessor;
+
+	private boolean forceGc = true;
+
+	private int verifyAttempts = 3;
+
+	private final Map<ClassLoader, TrackedLoader> trackedLoaders = new IdentityHashMap<ClassLoader, TrackedLoader>();
+
+	/**
+	 * Class loaders released (or being released), weakly referenced so they can still be unloaded.
+	 */
+	private final Map<ClassLoader, Boolean> releasedLoaders = new WeakHashMap<ClassLoader, Boolean>();
+
+	private final List<ReleasedLoader> pendingReleases = new LinkedList<ReleasedLoader>();
+
+	private final LinkedList<ReleasedLoader> recentReleases = new LinkedList<ReleasedLoader>();
+
+	private final AtomicLong released = new AtomicLong();
+
+	private final AtomicLong unloaded = new AtomicLong();
+
+	private final AtomicLong leaked = new AtomicLong();
+
+	private final AtomicLong reclaimedMetaspace = new AtomicLong();
+
+	private ScheduledExecutorService checkExecutor;
+
+	@Override
+	public void afterPropertiesSet() {
+		if (orbAccessor != null && orbAccessor.lastIndexOf('.') <= 0) {
+			throw new BeanCreationException("Property 'orbAccessor' must be fully qualified static method name: " + orbAccessor);
+		}
+		if (checkInterval > 0) {
+			checkExecutor = new ScheduledThreadPoolExecutor(1,
+					new ClassLoaderThreadFactory(ClassLoaderLifecycleManager.class.getClassLoader(), "ClassLoaderLifecycle"));
+			checkExecutor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						evictIdle();
+					} catch (RuntimeException e) {
+						LOGGER.warn("Class loader eviction failed", e);
+					}
+				}
+			}, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (checkExecutor != null) {
+			checkExecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Starts tracking class loader, it becomes idle right away.
+	 */
+	public synchronized void track(ClassLoader classLoader) {
+		getTrackedLoader(classLoader);
+	}
+
+	/**
+	 * Marks class loader as used by given proxy bean (or any other user) until {@link #unregister(ClassLoader, Object)}.
+	 *
+	 * @throws IllegalStateException when class loader was already released
+	 */
+	public synchronized void register(ClassLoader classLoader, Object user) {
+		if (releasedLoaders.containsKey(classLoader)) {
+			throw new IllegalStateException("Class loader " + classLoader + " was already released, it can not be used anymore");
+		}
+		getTrackedLoader(classLoader).users.put(user, Boolean.TRUE);
+	}
+
+	/**
+	 * Class loader becomes idle when its last user is unregistered.
+	 */
+	public synchronized void unregister(ClassLoader classLoader, Object user) {
+		TrackedLoader tracked = trackedLoaders.get(classLoader);
+		if (tracked != null && tracked.users.remove(user) != null && tracked.users.isEmpty()) {
+			tracked.idleSince = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Adds resource destroyed when class loader is released. {@link Timer}s are cancelled, {@link ExecutorService}s shut
+	 * down, {@link DisposableBean}s destroyed and {@link Closeable}s closed.
+	 */
+	public synchronized void addResource(ClassLoader classLoader, Object resource) {
+		getTrackedLoader(classLoader).resources.add(resource);
+	}
+
+	private TrackedLoader getTrackedLoader(ClassLoader classLoader) {
+		TrackedLoader tracked = trackedLoaders.get(classLoader);
+		if (tracked == null) {
+			tracked = new TrackedLoader(classLoader);
+			trackedLoaders.put(classLoader, tracked);
+		}
+		return tracked;
+	}
+
+	@Override
+	public void evictIdle() {
+		long now = System.currentTimeMillis();
+		List<TrackedLoader> idle = new ArrayList<TrackedLoader>();
+		synchronized (this) {
+			for (Iterator<TrackedLoader> it = trackedLoaders.values().iterator(); it.hasNext(); ) {
+				TrackedLoader tracked = it.next();
+				if (tracked.users.isEmpty() && now - tracked.idleSince >= idleTimeout) {
+					it.remove();
+					releasedLoaders.put(tracked.classLoader, Boolean.TRUE);
+					idle.add(tracked);
+				}
+			}
+		}
+
+		for (TrackedLoader tracked : idle) {
+			release(tracked);
+		}
+		verifyReleases();
+	}
+
+	/**
+	 * Releases class loader right away, regardless of idle timeout.
+	 *
+	 * @throws IllegalStateException when class loader is still used
+	 */
+	public void release(ClassLoader classLoader) {
+		TrackedLoader tracked;
+		synchronized (this) {
+			tracked = trackedLoaders.get(classLoader);
+			if (tracked != null && !tracked.users.isEmpty()) {
+				throw new IllegalStateException("Class loader " + tracked.description + " is still used by " + tracked.users.size() + " beans");
+			}
+			trackedLoaders.remove(classLoader);
+			releasedLoaders.put(classLoader, Boolean.TRUE);
+		}
+		release(tracked != null ? tracked : new TrackedLoader(classLoader));
+	}
+
+	private void release(TrackedLoader tracked) {
+		ClassLoader classLoader = tracked.classLoader;
+		LOGGER.info("Releasing class loader " + tracked.description);
+
+		if (orbAccessor != null) {
+			shutdownOrb(classLoader);
+		}
+		for (Object resource : tracked.resources) {
+			destroyResource(resource);
+		}
+		ClassLoaderUtilDelegate.release(classLoader);
+		ResourceBundle.clearCache(classLoader);
+		releaseThreads(classLoader);
+
+		int classCount = classLoader instanceof LibDirClassLoader ? ((LibDirClassLoader) classLoader).getDefinedClassCount() : 0;
+		try {
+			if (classLoader instanceof LibDirClassLoader) {
+				((LibDirClassLoader) classLoader).release();
+			} else if (classLoader instanceof Closeable) {
+				((Closeable) classLoader).close();
+			}
+		} catch (Exception e) {
+			LOGGER.warn("Could not close class loader " + tracked.description, e);
+		}
+
+		ReleasedLoader release = new ReleasedLoader(classLoader, tracked.description, classCount * getMetaspacePerClass());
+		released.incrementAndGet();
+		synchronized (this) {
+			pendingReleases.add(release);
+			recentReleases.addFirst(release);
+			if (recentReleases.size() > MAX_REPORTED_RELEASES) {
+				recentReleases.removeLast();
+			}
+		}
+	}
+
+	private void shutdownOrb(ClassLoader classLoader) {
+		final int idx = orbAccessor.lastIndexOf('.');
+		final ClassLoader loader = classLoader;
+		try {
+			doInClassLoader(classLoader, new ClassLoaderActionCallback<Object>() {
+				@Override
+				public Object execute() throws Throwable {
+					Method accessor = Class.forName(orbAccessor.substring(0, idx), true, loader).getMethod(orbAccessor.substring(idx + 1));
+					if (accessor.getDeclaringClass().getClassLoader() != loader) {
+						LOGGER.warn("ORB accessor " + orbAccessor + " is defined by " + accessor.getDeclaringClass().getClassLoader()
+								+ ", not by released class loader, ORB shared with other class loaders is not shut down");
+						return null;
+					}
+					Object orb = accessor.invoke(null);
+					if (orb instanceof ORB) {
+						((ORB) orb).shutdown(true);
+						((ORB) orb).destroy();
+					}
+					return null;
+				}
+			});
+		} catch (Throwable e) {
+			LOGGER.warn("Could not shut down ORB using " + orbAccessor, e);
+		}
+	}
+
+	private void destroyResource(Object resource) {
+		try {
+			if (resource instanceof Timer) {
+				((Timer) resource).cancel();
+			} else if (resource instanceof ExecutorService) {
+				((ExecutorService) resource).shutdownNow();
+			} else if (resource instanceof DisposableBean) {
+				((DisposableBean) resource).destroy();
+			} else if (resource instanceof Closeable) {
+				((Closeable) resource).close();
+			}
+		} catch (Exception e) {
+			LOGGER.warn("Could not destroy " + resource, e);
+		}
+	}
+
+	private void releaseThreads(ClassLoader classLoader) {
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getClass().getClassLoader() == classLoader) {
+				LOGGER.warn("Thread " + thread.getName() + " started by released class loader is still running, class loader will not be unloaded");
+			} else if (thread.getContextClassLoader() == classLoader) {
+				LOGGER.warn("Thread " + thread.getName() + " still uses released class loader, resetting its context class loader");
+				thread.setContextClassLoader(classLoader.getParent());
+			}
+		}
+	}
+
+	private void verifyReleases() {
+		synchronized (this) {
+			if (pendingReleases.isEmpty()) {
+				return;
+			}
+		}
+		if (forceGc) {
+			System.gc();
+		}
+
+		synchronized (this) {
+			for (Iterator<ReleasedLoader> it = pendingReleases.iterator(); it.hasNext(); ) {
+				ReleasedLoader release = it.next();
+				release.attempts++;
+				if (release.classLoader.get() == null) {
+					release.unloaded = Boolean.TRUE;
+					unloaded.incrementAndGet();
+					reclaimedMetaspace.addAndGet(release.metaspace);
+					LOGGER.info("Class loader " + release.description + " unloaded, reclaimed ~" + toKB(release.metaspace) + " KB of metaspace");
+					it.remove();
+				} else if (release.attempts >= verifyAttempts) {
+					release.unloaded = Boolean.FALSE;
+					leaked.incrementAndGet();
+					LOGGER.warn("Class loader " + release.description + " is still reachable after release, it leaks ~"
+							+ toKB(release.metaspace) + " KB of metaspace. Take heap dump and look for paths to it from GC roots.");
+					it.remove();
+				}
+			}
+		}
+	}
+
+	private static long getMetaspacePerClass() {
+		long loadedClasses = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+		return loadedClasses > 0 ? LibDirClassLoaderFactoryBean.getMetaspaceUsed() / loadedClasses : 0;
+	}
+
+	private static long toKB(long bytes) {
+		return bytes / 1024;
+	}
+
+	@Override
+	public synchronized int getTrackedCount() {
+		return trackedLoaders.size();
+	}
+
+	@Override
+	public long getReleasedCount() {
+		return released.get();
+	}
+
+	@Override
+	public long getUnloadedCount() {
+		return unloaded.get();
+	}
+
+	@Override
+	public long getLeakedCount() {
+		return leaked.get();
+	}
+
+	@Override
+	public long getReclaimedMetaspace() {
+		return reclaimedMetaspace.get();
+	}
+
+	@Override
+	public synchronized String getReport() {
+		int inUse = 0;
+		for (TrackedLoader tracked : trackedLoaders.values()) {
+			if (!tracked.users.isEmpty()) {
+				inUse++;
+			}
+		}
+
+		StringBuilder report = new StringBuilder();
+		report.append("Tracked: ").append(trackedLoaders.size()).append(" loaders (").append(inUse).append(" in use)")
+				.append(", released: ").append(getReleasedCount())
+				.append(", unloaded: ").append(getUnloadedCount())
+				.append(", leaked: ").append(getLeakedCount())
+				.append(", reclaimed: ~").append(toKB(getReclaimedMetaspace())).append(" KB")
+				.append(", JVM metaspace used: ").append(toKB(LibDirClassLoaderFactoryBean.getMetaspaceUsed())).append(" KB");
+		for (ReleasedLoader release : recentReleases) {
+			report.append("\n  ").append(release.description).append(": ")
+					.append(release.unloaded == null ? "pending" : release.unloaded ? "unloaded" : "leaked")
+					.append(", ~").append(toKB(release.metaspace)).append(" KB");
+		}
+		return report.toString();
+	}
+
+	@Override
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	/**
+	 * @param idleTimeout milliseconds class loader must stay unused before it is released, 300000 by default
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * @param checkInterval milliseconds between idle checks, 60000 by default, 0 disables background checks
+	 * ({@link #evictIdle()} has to be called explicitly then)
+	 */
+	public void setCheckInterval(long checkInterval) {
+		this.checkInterval = checkInterval;
+	}
+
+	/**
+	 * @param orbAccessor fully qualified name of static no argument method returning ORB of class loader, eg.
+	 * <code>com.ibm.ws.orb.GlobalORBFactory.globalORB</code>. When not set ORB is not shut down.
+	 */
+	public void setOrbAccessor(String orbAccessor) {
+		this.orbAccessor = orbAccessor;
+	}
+
+	/**
+	 * @param forceGc whether to call {@link System#gc()} before checking released class loaders were unloaded,
+	 * <code>true</code> by default. Without it class loader not collected by regular GC in time is reported as leaked.
+	 */
+	public void setForceGc(boolean forceGc) {
+		this.forceGc = forceGc;
+	}
+
+	/**
+	 * @param verifyAttempts number of checks after which released class loader still reachable is reported as leaked, 3 by default
+	 */
+	public void setVerifyAttempts(int verifyAttempts) {
+		this.verifyAttempts = verifyAttempts;
+	}
+
+	private static class TrackedLoader {
+
+		private final ClassLoader classLoader;
+
+		private final String description;
+
+		private final Map<Object, Boolean> users = new IdentityHashMap<Object, Boolean>();
+
+		private final List<Object> resources = new ArrayList<Object>();
+
+		private long idleSince = System.currentTimeMillis();
+
+		TrackedLoader(ClassLoader classLoader) {
+			this.classLoader = classLoader;
+			this.description = classLoader.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(classLoader));
+		}
+
+	}
+
+	private static class ReleasedLoader {
+
+		private final WeakReference<ClassLoader> classLoader;
+
+		private final String description;
+
+		private final long metaspace;
+
+		private int attempts;
+
+		private Boolean unloaded;
+
+		ReleasedLoader(ClassLoader classLoader, String description, long metaspace) {
+			this.classLoader = new WeakReference<ClassLoader>(classLoader);
+			this.description = description;
+			this.metaspace = metaspace;
+		}
+
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.github.djarosz.spring.ejb.access;
+
+/**
+ * JMX view of {@link ClassLoaderLifecycleManager}.
+ */
+public interface ClassLoaderLifecycleManagerMBean {
+
+	long getIdleTimeout();
+
+	/**
+	 * @return number of class loaders tracked and not released yet
+	 */
+	int getTrackedCount();
+
+	/**
+	 * @return number of class loaders released so far
+	 */
+	long getReleasedCount();
+
+	/**
+	 * @return number of released class loaders verified to be garbage collected
+	 */
+	long getUnloadedCount();
+
+	/**
+	 * @return number of released class loaders still reachable after all verification attempts
+	 */
+	long getLeakedCount();
+
+	/**
+	 * @return metaspace (or perm gen) bytes reclaimed by unloading released class loaders, approximate
+	 */
+	long getReclaimedMetaspace();
+
+	String getReport();
+
+	/**
+	 * Releases class loaders idle for longer than idle timeout and verifies released ones were unloaded.
+	 */
+	void evictIdle();
+
+}
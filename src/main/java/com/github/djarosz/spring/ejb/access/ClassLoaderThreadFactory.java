@@ -0,0 +1,31 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates daemon threads with context class loader set to given class loader, so tasks run by them
+ * do not have to switch class loader.
+ */
+public class ClassLoaderThreadFactory implements ThreadFactory {
+
+	private final ClassLoader classLoader;
+
+	private final String namePrefix;
+
+	private final AtomicInteger count = new AtomicInteger();
+
+	public ClassLoaderThreadFactory(ClassLoader classLoader, String namePrefix) {
+		this.classLoader = classLoader;
+		this.namePrefix = namePrefix;
+	}
+
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread thread = new Thread(r, namePrefix + "-" + count.incrementAndGet());
+		thread.setDaemon(true);
+		thread.setContextClassLoader(classLoader);
+		return thread;
+	}
+
+}
@@ -4,8 +4,6 @@ import java.rmi.NoSuchObjectException;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.rmi.server.RMIClassLoader;
-import java.util.Map;
-import java.util.WeakHashMap;
 import javax.rmi.CORBA.Stub;
 import javax.rmi.CORBA.Tie;
 import javax.rmi.CORBA.UtilDelegate;
@@ -34,32 +32,101 @@ import org.omg.CORBA.portable.OutputStream;
  * This ensures that any call to {@link javax.rmi.CORBA.Util} method will result in calling real UtilDelegate class
  * (specified as javax.rmi.CORBA.ClassLoaderUtilDelegate.UtilClass system property) but in context on class loader
  * of current running thread and not in context of system class loader.
+ * <p>
+ * Delegates are created once per class loader and looked up without locking, as every CORBA call
+ * goes through this class. Delegate is an instance of class defined by (or visible to) its class loader, so it keeps
+ * that loader reachable until {@link #release(ClassLoader)} is called.
+ * <p>
+ * Classes resolved by {@link #loadClass(String, String, ClassLoader)} (and classes not found) are cached per delegate,
+ * see {@link ClassResolutionCache}. Cache is configured with system properties
+ * <code>javax.rmi.CORBA.ClassLoaderUtilDelegate.classCacheSize</code> (max classes cached per class loader, 1000 by default,
+ * 0 disables cache) and <code>javax.rmi.CORBA.ClassLoaderUtilDelegate.negativeClassCacheTtl</code> (milliseconds classes
+ * not found are cached, 60000 by default, 0 disables negative caching). Its statistics are available from
+ * {@link #getClassResolutionStatistics()}.
+ * <p>
+ * {@link #copyObject(Object, ORB)} and {@link #copyObjects(Object[], ORB)} do not pass immutable objects (strings, boxed
+ * primitives, {@link java.math.BigInteger}, {@link java.math.BigDecimal} and enums) to real delegate, which would copy
+ * them by serialization, but return them as they are. Arrays of these types and of primitives are copied shallowly.
+ * More immutable classes can be listed in <code>javax.rmi.CORBA.ClassLoaderUtilDelegate.immutableTypes</code> system
+ * property (comma separated), setting <code>javax.rmi.CORBA.ClassLoaderUtilDelegate.copyImmutableTypes</code> to
+ * <code>true</code> makes real delegate copy everything again. See {@link ImmutableTypes}.
  */
 public class ClassLoaderUtilDelegate implements UtilDelegate {
 
 	private static final String REAL_UTIL_CLASS_KEY = "javax.rmi.CORBA.ClassLoaderUtilDelegate.UtilClass";
 
-	private Map<ClassLoader, UtilDelegate> utilDelegates = new WeakHashMap<ClassLoader, UtilDelegate>();
+	private static final String CLASS_CACHE_SIZE_KEY = "javax.rmi.CORBA.ClassLoaderUtilDelegate.classCacheSize";
+
+	private static final String NEGATIVE_CLASS_CACHE_TTL_KEY = "javax.rmi.CORBA.ClassLoaderUtilDelegate.negativeClassCacheTtl";
+
+	private static final String IMMUTABLE_TYPES_KEY = "javax.rmi.CORBA.ClassLoaderUtilDelegate.immutableTypes";
+
+	private static final String COPY_IMMUTABLE_TYPES_KEY = "javax.rmi.CORBA.ClassLoaderUtilDelegate.copyImmutableTypes";
+
+	private static final WeakClassLoaderMap<UtilDelegate> UTIL_DELEGATES = new WeakClassLoaderMap<UtilDelegate>();
+
+	private static final WeakClassLoaderMap<ClassResolutionCache> CLASS_CACHES = new WeakClassLoaderMap<ClassResolutionCache>();
+
+	private static final ClassResolutionStatistics CLASS_RESOLUTION_STATISTICS = new ClassResolutionStatistics();
+
+	private final String realUtilClass;
+
+	private final int classCacheSize;
+
+	private final long negativeClassCacheTtl;
+
+	private final ImmutableTypes immutableTypes;
 
 	public ClassLoaderUtilDelegate() {
+		realUtilClass = System.getProperty(REAL_UTIL_CLASS_KEY);
+		classCacheSize = Integer.getInteger(CLASS_CACHE_SIZE_KEY, 1000);
+		negativeClassCacheTtl = Long.getLong(NEGATIVE_CLASS_CACHE_TTL_KEY, 60000);
+		String additionalImmutableTypes = System.getProperty(IMMUTABLE_TYPES_KEY);
+		immutableTypes = Boolean.getBoolean(COPY_IMMUTABLE_TYPES_KEY) ? null
+				: new ImmutableTypes(additionalImmutableTypes != null ? additionalImmutableTypes.split(",") : null);
+	}
+
+	public static ClassResolutionStatistics getClassResolutionStatistics() {
+		return CLASS_RESOLUTION_STATISTICS;
+	}
+
+	/**
+	 * Drops delegate created for given class loader, so the loader can be garbage collected.
+	 *
+	 * @return <code>true</code> if there was delegate for the class loader
+	 */
+	public static boolean release(ClassLoader classLoader) {
+		synchronized (UTIL_DELEGATES) {
+			CLASS_CACHES.remove(classLoader);
+			return UTIL_DELEGATES.remove(classLoader) != null;
+		}
 	}
 
 	private UtilDelegate getClassLoaderUtilDelegate() {
 		ClassLoader cl = Thread.currentThread().getContextClassLoader();
-		UtilDelegate delegate = utilDelegates.get(cl);
+		UtilDelegate delegate = UTIL_DELEGATES.get(cl);
 
 		if (delegate == null) {
-			String realUtilClass = System.getProperty(REAL_UTIL_CLASS_KEY);
-			if (realUtilClass == null) {
-				throw new RuntimeException(REAL_UTIL_CLASS_KEY + " system property not set");
-			}
-			delegate = createDelegate(realUtilClass);
-			utilDelegates.put(cl, delegate);
+			delegate = createClassLoaderUtilDelegate(cl);
 		}
 
 		return delegate;
 	}
 
+	private UtilDelegate createClassLoaderUtilDelegate(ClassLoader cl) {
+		synchronized (UTIL_DELEGATES) {
+			UtilDelegate delegate = UTIL_DELEGATES.get(cl);
+			if (delegate == null) {
+				if (realUtilClass == null) {
+					throw new RuntimeException(REAL_UTIL_CLASS_KEY + " system property not set");
+				}
+				delegate = createDelegate(realUtilClass);
+				UTIL_DELEGATES.putIfAbsent(cl, delegate);
+			}
+			return delegate;
+		}
+	}
+
 	private UtilDelegate createDelegate(String className) {
 		try {
 			ClassLoader loader = Thread.currentThread().getContextClassLoader();
@@ -127,7 +194,25 @@ public class ClassLoaderUtilDelegate implements UtilDelegate {
 
 	@Override
 	public Class loadClass(String className, String remoteCodebase, ClassLoader loader) throws ClassNotFoundException {
-		return getClassLoaderUtilDelegate().loadClass(className, remoteCodebase, loader);
+		if (classCacheSize <= 0) {
+			return getClassLoaderUtilDelegate().loadClass(className, remoteCodebase, loader);
+		}
+		return getClassResolutionCache().loadClass(getClassLoaderUtilDelegate(), className, remoteCodebase, loader);
+	}
+
+	private ClassResolutionCache getClassResolutionCache() {
+		ClassLoader cl = Thread.currentThread().getContextClassLoader();
+		ClassResolutionCache cache = CLASS_CACHES.get(cl);
+		if (cache == null) {
+			synchronized (UTIL_DELEGATES) {
+				cache = CLASS_CACHES.get(cl);
+				if (cache == null) {
+					cache = new ClassResolutionCache(classCacheSize, negativeClassCacheTtl, CLASS_RESOLUTION_STATISTICS);
+					CLASS_CACHES.putIfAbsent(cl, cache);
+				}
+			}
+		}
+		return cache;
 	}
 
 	@Override
@@ -142,11 +227,26 @@ public class ClassLoaderUtilDelegate implements UtilDelegate {
 
 	@Override
 	public Object copyObject(Object obj, ORB orb) throws RemoteException {
+		if (immutableTypes != null) {
+			ClassLoader cl = Thread.currentThread().getContextClassLoader();
+			if (immutableTypes.isImmutable(obj, cl)) {
+				return obj;
+			}
+			if (immutableTypes.isImmutableArray(obj, cl)) {
+				return ImmutableTypes.copyArray(obj);
+			}
+		}
 		return getClassLoaderUtilDelegate().copyObject(obj, orb);
 	}
 
 	@Override
 	public Object[] copyObjects(Object[] obj, ORB orb) throws RemoteException {
+		if (immutableTypes != null) {
+			Object[] copy = immutableTypes.copyAll(obj, Thread.currentThread().getContextClassLoader());
+			if (copy != null) {
+				return copy;
+			}
+		}
 		return getClassLoaderUtilDelegate().copyObjects(obj, orb);
 	}
 }
@@ -0,0 +1,105 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.rmi.CORBA.UtilDelegate;
+
+/**
+ * Caches classes resolved by {@link UtilDelegate#loadClass(String, String, ClassLoader)} of one delegate, so value types
+ * unmarshalled in every reply are not searched for in all jars of class loader again. Classes not found are cached too,
+ * for <var>negativeTtl</var> milliseconds, as remote codebase may become available later.
+ * <p>
+ * Entries are kept per class loader passed to <code>loadClass</code>, weakly, and dropped with it. Cached classes are weakly
+ * referenced as well, so cache never keeps class loader reachable. Each class loader keeps at most <var>maxSize</var>
+ * entries, arbitrary entry is dropped to make room for new one.
+ */
+class ClassResolutionCache {
+
+	private final WeakClassLoaderMap<ConcurrentMap<String, Object>> entries = new WeakClassLoaderMap<ConcurrentMap<String, Object>>();
+
+	private final int maxSize;
+
+	private final long negativeTtl;
+
+	private final ClassResolutionStatistics statistics;
+
+	ClassResolutionCache(int maxSize, long negativeTtl, ClassResolutionStatistics statistics) {
+		this.maxSize = maxSize;
+		this.negativeTtl = negativeTtl;
+		this.statistics = statistics;
+	}
+
+	public Class<?> loadClass(UtilDelegate delegate, String className, String remoteCodebase, ClassLoader loader)
+			throws ClassNotFoundException {
+		ConcurrentMap<String, Object> classes = getClasses(loader);
+		String key = remoteCodebase == null ? className : className + ' ' + remoteCodebase;
+
+		Object cached = classes.get(key);
+		if (cached instanceof ClassReference) {
+			Class<?> clazz = ((ClassReference) cached).get();
+			if (clazz != null) {
+				statistics.recordHit();
+				return clazz;
+			}
+		} else if (cached instanceof NotFound && ((NotFound) cached).expires > System.currentTimeMillis()) {
+			statistics.recordNegativeHit();
+			throw new ClassNotFoundException(className);
+		}
+
+		statistics.recordMiss();
+		try {
+			Class<?> clazz = delegate.loadClass(className, remoteCodebase, loader);
+			put(classes, key, new ClassReference(clazz));
+			return clazz;
+		} catch (ClassNotFoundException e) {
+			if (negativeTtl > 0) {
+				put(classes, key, new NotFound(System.currentTimeMillis() + negativeTtl));
+			}
+			throw e;
+		}
+	}
+
+	private ConcurrentMap<String, Object> getClasses(ClassLoader loader) {
+		ConcurrentMap<String, Object> classes = entries.get(loader);
+		if (classes == null) {
+			classes = new ConcurrentHashMap<String, Object>();
+			ConcurrentMap<String, Object> existing = entries.putIfAbsent(loader, classes);
+			if (existing != null) {
+				classes = existing;
+			}
+		}
+		return classes;
+	}
+
+	private void put(ConcurrentMap<String, Object> classes, String key, Object value) {
+		if (classes.size() >= maxSize && !classes.containsKey(key)) {
+			Iterator<String> it = classes.keySet().iterator();
+			if (it.hasNext()) {
+				it.next();
+				it.remove();
+			}
+		}
+		classes.put(key, value);
+	}
+
+	private static class ClassReference extends WeakReference<Class<?>> {
+
+		ClassReference(Class<?> clazz) {
+			super(clazz);
+		}
+
+	}
+
+	private static class NotFound {
+
+		private final long expires;
+
+		NotFound(long expires) {
+			this.expires = expires;
+		}
+
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of class resolution caches of all {@link ClassLoaderUtilDelegate} delegates. Delegate is created by
+ * {@link javax.rmi.CORBA.Util}, not by Spring, so export these using {@link ClassLoaderUtilDelegate#getClassResolutionStatistics()}:
+ * <pre>
+ *	&lt;bean id="classResolutionStatistics" class="com.github.djarosz.spring.ejb.access.ClassLoaderUtilDelegate"
+ *		factory-method="getClassResolutionStatistics"/&gt;
+ * </pre>
+ * and Spring <code>MBeanExporter</code>.
+ */
+public class ClassResolutionStatistics implements ClassResolutionStatisticsMBean {
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong negativeHits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	void recordHit() {
+		hits.incrementAndGet();
+	}
+
+	void recordNegativeHit() {
+		negativeHits.incrementAndGet();
+	}
+
+	void recordMiss() {
+		misses.incrementAndGet();
+	}
+
+	@Override
+	public long getLookupCount() {
+		return getHitCount() + getNegativeHitCount() + getMissCount();
+	}
+
+	@Override
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	@Override
+	public long getNegativeHitCount() {
+		return negativeHits.get();
+	}
+
+	@Override
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	@Override
+	public double getHitRatio() {
+		long lookups = getLookupCount();
+		return lookups > 0 ? (double) (getHitCount() + getNegativeHitCount()) / lookups : 0;
+	}
+
+	@Override
+	public void reset() {
+		hits.set(0);
+		negativeHits.set(0);
+		misses.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "lookups=" + getLookupCount() + ", hits=" + getHitCount() + ", negativeHits=" + getNegativeHitCount()
+				+ ", misses=" + getMissCount();
+	}
+
+}
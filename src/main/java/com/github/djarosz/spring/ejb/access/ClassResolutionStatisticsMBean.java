@@ -0,0 +1,32 @@
+package com.github.djarosz.spring.ejb.access;
+
+/**
+ * JMX view of {@link ClassResolutionStatistics}.
+ */
+public interface ClassResolutionStatisticsMBean {
+
+	/**
+	 * @return number of <code>loadClass</code> calls
+	 */
+	long getLookupCount();
+
+	/**
+	 * @return number of lookups answered by cached class
+	 */
+	long getHitCount();
+
+	/**
+	 * @return number of lookups answered by cached {@link ClassNotFoundException}
+	 */
+	long getNegativeHitCount();
+
+	/**
+	 * @return number of lookups passed to real delegate
+	 */
+	long getMissCount();
+
+	double getHitRatio();
+
+	void reset();
+
+}
@@ -0,0 +1,39 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.lang.reflect.InvocationTargetException;
+import javax.naming.NamingException;
+import org.springframework.ejb.access.SimpleRemoteSlsbInvokerInterceptor;
+
+/**
+ * Interceptor of one {@link RemoteEndpoint}, exposing home lookup so endpoints can be warmed up.
+ */
+class EndpointInvokerInterceptor extends SimpleRemoteSlsbInvokerInterceptor {
+
+	/**
+	 * Looks up home and creates (and removes) session bean reference, must be called in bean class loader.
+	 */
+	void warmUp() throws NamingException, InvocationTargetException {
+		refreshHome();
+		remove(newSessionBeanInstance());
+	}
+
+	/**
+	 * Removes <var>ejb</var> if it is <code>EJBObject</code> of bean class loader (context class loader), which does not
+	 * have to be the one this class sees.
+	 */
+	private void remove(Object ejb) {
+		try {
+			Class<?> ejbObjectClass = Class.forName("javax.ejb.EJBObject", false, Thread.currentThread().getContextClassLoader());
+			if (ejbObjectClass.isInstance(ejb)) {
+				ejbObjectClass.getMethod("remove").invoke(ejb);
+			}
+		} catch (ClassNotFoundException e) {
+			// EJB 3 client without EJB 2 API, nothing to remove
+		} catch (InvocationTargetException e) {
+			logger.warn("Could not invoke 'remove' on remote EJB proxy", e.getTargetException());
+		} catch (Exception e) {
+			logger.warn("Could not invoke 'remove' on remote EJB proxy", e);
+		}
+	}
+
+}
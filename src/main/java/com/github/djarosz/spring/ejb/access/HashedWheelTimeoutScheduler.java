@@ -0,0 +1,355 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * {@link TimeoutScheduler} using hashed timing wheel. Scheduling and cancelling are O(1) and cancelled
+ * timeouts are removed from the wheel on next tick, so unlike {@link java.util.Timer} it does not degrade
+ * when most of timeouts are cancelled (which is the case for remote call timeouts).
+ * <p>
+ * Deadlines are checked every <var>tickDuration</var> milliseconds so tasks run up to one tick late.
+ * Worker thread is a daemon thread started on first {@link #schedule(Runnable, long)} call.
+ * One instance is meant to be shared by all proxy beans, eg:
+ * <pre>
+ *	&lt;bean id="timeoutScheduler" class="HashedWheelTimeoutScheduler"&gt;
+ *		&lt;property name="tickDuration" value="20"/&gt;
+ *	&lt;/bean&gt;
+ * </pre>
+ */
+public class HashedWheelTimeoutScheduler implements TimeoutScheduler, DisposableBean {
+
+	private static final Logger log = Logger.getLogger(HashedWheelTimeoutScheduler.class);
+
+	private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+	private static final HashedWheelTimeoutScheduler DEFAULT_INSTANCE = new HashedWheelTimeoutScheduler();
+
+	private long tickDuration = 10;
+
+	private int ticksPerWheel = 512;
+
+	private String threadName = "HashedWheelTimeoutScheduler";
+
+	private final Queue<WheelTimeout> pendingTimeouts = new ConcurrentLinkedQueue<WheelTimeout>();
+
+	private final Queue<WheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<WheelTimeout>();
+
+	private final AtomicLong armedCount = new AtomicLong();
+
+	private final AtomicLong firedCount = new AtomicLong();
+
+	private final AtomicLong cancelledCount = new AtomicLong();
+
+	private volatile Thread workerThread;
+
+	private volatile boolean running;
+
+	private volatile long startTime;
+
+	private long tickNanos;
+
+	private Bucket[] wheel;
+
+	/**
+	 * Scheduler used by proxy beans which have timeout set but no scheduler configured.
+	 */
+	public static HashedWheelTimeoutScheduler getDefaultInstance() {
+		return DEFAULT_INSTANCE;
+	}
+
+	@Override
+	public Timeout schedule(Runnable task, long delayMillis) {
+		if (workerThread == null) {
+			start();
+		}
+
+		WheelTimeout timeout = new WheelTimeout(this, task, System.nanoTime() - startTime + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+		pendingTimeouts.add(timeout);
+		armedCount.incrementAndGet();
+		return timeout;
+	}
+
+	private synchronized void start() {
+		if (workerThread != null) {
+			return;
+		}
+		if (tickDuration <= 0) {
+			throw new IllegalArgumentException("tickDuration must be greater than 0: " + tickDuration);
+		}
+		if (ticksPerWheel <= 0) {
+			throw new IllegalArgumentException("ticksPerWheel must be greater than 0: " + ticksPerWheel);
+		}
+
+		int wheelSize = Integer.highestOneBit(ticksPerWheel - 1) << 1; // round up to power of 2
+		wheel = new Bucket[Math.max(wheelSize, 1)];
+		for (int i = 0; i < wheel.length; i++) {
+			wheel[i] = new Bucket();
+		}
+		tickNanos = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+		startTime = System.nanoTime();
+		running = true;
+
+		Thread thread = new Thread(new Worker(), threadName);
+		thread.setDaemon(true);
+		// do not inherit class loader of thread which scheduled first timeout, it would never be unloaded
+		thread.setContextClassLoader(HashedWheelTimeoutScheduler.class.getClassLoader());
+		thread.start();
+		workerThread = thread;
+	}
+
+	@Override
+	public void destroy() {
+		Thread thread = workerThread;
+		if (thread == null || this == DEFAULT_INSTANCE) {
+			return;
+		}
+
+		running = false;
+		thread.interrupt();
+		try {
+			thread.join(tickDuration * 10);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public void setTickDuration(long tickDuration) {
+		this.tickDuration = tickDuration;
+	}
+
+	public long getTickDuration() {
+		return tickDuration;
+	}
+
+	public void setTicksPerWheel(int ticksPerWheel) {
+		this.ticksPerWheel = ticksPerWheel;
+	}
+
+	public int getTicksPerWheel() {
+		return ticksPerWheel;
+	}
+
+	public void setThreadName(String threadName) {
+		this.threadName = threadName;
+	}
+
+	/**
+	 * @return number of timeouts scheduled so far
+	 */
+	public long getArmedCount() {
+		return armedCount.get();
+	}
+
+	/**
+	 * @return number of timeouts which expired and had their task run
+	 */
+	public long getFiredCount() {
+		return firedCount.get();
+	}
+
+	/**
+	 * @return number of timeouts cancelled before expiring
+	 */
+	public long getCancelledCount() {
+		return cancelledCount.get();
+	}
+
+	/**
+	 * @return number of timeouts neither fired nor cancelled yet
+	 */
+	public long getPendingCount() {
+		return armedCount.get() - firedCount.get() - cancelledCount.get();
+	}
+
+	private class Worker implements Runnable {
+
+		private long tick;
+
+		@Override
+		public void run() {
+			while (running) {
+				long deadline = waitForNextTick();
+				if (!running) {
+					break;
+				}
+				removeCancelledTimeouts();
+				transferPendingTimeouts();
+				wheel[(int) (tick & (wheel.length - 1))].expireTimeouts(deadline);
+				tick++;
+			}
+		}
+
+		private long waitForNextTick() {
+			long deadline = tickNanos * (tick + 1);
+			while (true) {
+				long currentTime = System.nanoTime() - startTime;
+				long sleepMillis = (deadline - currentTime + 999999) / 1000000;
+				if (sleepMillis <= 0) {
+					return currentTime;
+				}
+				try {
+					Thread.sleep(sleepMillis);
+				} catch (InterruptedException e) {
+					if (!running) {
+						return currentTime;
+					}
+				}
+			}
+		}
+
+		private void transferPendingTimeouts() {
+			for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+				WheelTimeout timeout = pendingTimeouts.poll();
+				if (timeout == null) {
+					break;
+				}
+				if (timeout.state != WheelTimeout.ST_INIT) {
+					continue;
+				}
+
+				long calculatedTick = timeout.deadline / tickNanos;
+				timeout.remainingRounds = (calculatedTick - tick) / wheel.length;
+				long ticks = Math.max(calculatedTick, tick); // deadlines in the past go to current bucket
+				wheel[(int) (ticks & (wheel.length - 1))].add(timeout);
+			}
+		}
+
+		private void removeCancelledTimeouts() {
+			WheelTimeout timeout;
+			while ((timeout = cancelledTimeouts.poll()) != null) {
+				if (timeout.bucket != null) {
+					timeout.bucket.remove(timeout);
+				}
+			}
+		}
+	}
+
+	private static final class WheelTimeout implements Timeout {
+
+		private static final int ST_INIT = 0;
+		private static final int ST_CANCELLED = 1;
+		private static final int ST_EXPIRED = 2;
+
+		private static final AtomicIntegerFieldUpdater<WheelTimeout> STATE_UPDATER =
+				AtomicIntegerFieldUpdater.newUpdater(WheelTimeout.class, "state");
+
+		private final HashedWheelTimeoutScheduler scheduler;
+
+		private final Runnable task;
+
+		private final long deadline;
+
+		private volatile int state = ST_INIT;
+
+		// accessed only by worker thread
+		private long remainingRounds;
+		private WheelTimeout next;
+		private WheelTimeout prev;
+		private Bucket bucket;
+
+		WheelTimeout(HashedWheelTimeoutScheduler scheduler, Runnable task, long deadline) {
+			this.scheduler = scheduler;
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		@Override
+		public boolean cancel() {
+			if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+				return false;
+			}
+			scheduler.cancelledCount.incrementAndGet();
+			scheduler.cancelledTimeouts.add(this);
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return state == ST_CANCELLED;
+		}
+
+		@Override
+		public boolean isExpired() {
+			return state == ST_EXPIRED;
+		}
+
+		void expire() {
+			if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+				return;
+			}
+			scheduler.firedCount.incrementAndGet();
+			try {
+				task.run();
+			} catch (Throwable e) {
+				log.warn("Timeout task " + task + " failed", e);
+			}
+		}
+	}
+
+	/**
+	 * Doubly linked list of timeouts hashed to the same wheel slot. Accessed only by worker thread.
+	 */
+	private static final class Bucket {
+
+		private WheelTimeout head;
+		private WheelTimeout tail;
+
+		void add(WheelTimeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		void expireTimeouts(long deadline) {
+			WheelTimeout timeout = head;
+			while (timeout != null) {
+				WheelTimeout next = timeout.next;
+				if (timeout.remainingRounds <= 0) {
+					if (timeout.deadline <= deadline) {
+						remove(timeout);
+						timeout.expire();
+					}
+				} else if (timeout.isCancelled()) {
+					remove(timeout);
+				} else {
+					timeout.remainingRounds--;
+				}
+				timeout = next;
+			}
+		}
+
+		void remove(WheelTimeout timeout) {
+			if (timeout.bucket != this) {
+				return;
+			}
+			WheelTimeout next = timeout.next;
+			if (timeout.prev != null) {
+				timeout.prev.next = next;
+			}
+			if (next != null) {
+				next.prev = timeout.prev;
+			}
+			if (timeout == head) {
+				head = next;
+			}
+			if (timeout == tail) {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps extra load caused by hedged calls: every call earns <var>ratio</var> of hedge, hedge is sent only when whole
+ * hedge was earned. At most <var>burst</var> hedges can be saved up.
+ */
+public class HedgeBudget {
+
+	private static final long UNIT = 1000;
+
+	private final long deposit;
+
+	private final long maxBalance;
+
+	private final AtomicLong balance;
+
+	/**
+	 * @param ratio max number of hedges per call, eg 0.05 for 5% extra calls
+	 * @param burst max number of hedges sent in row
+	 */
+	public HedgeBudget(double ratio, int burst) {
+		this.deposit = Math.round(ratio * UNIT);
+		this.maxBalance = burst * UNIT;
+		this.balance = new AtomicLong(maxBalance);
+	}
+
+	public void onCall() {
+		while (true) {
+			long current = balance.get();
+			if (current >= maxBalance || balance.compareAndSet(current, Math.min(maxBalance, current + deposit))) {
+				return;
+			}
+		}
+	}
+
+	public boolean tryAcquire() {
+		while (true) {
+			long current = balance.get();
+			if (current < UNIT) {
+				return false;
+			}
+			if (balance.compareAndSet(current, current - UNIT)) {
+				return true;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,18 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks business interface method which can be called many times with the same arguments without side effects.
+ * Identical concurrent calls of such method are coalesced by {@link ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean}
+ * when <var>coalesceCalls</var> is enabled (see {@link CallCoalescer}).
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Idempotent {
+}
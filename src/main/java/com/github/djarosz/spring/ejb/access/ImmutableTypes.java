@@ -0,0 +1,116 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Types which instances can be passed to co-located calls without copying. These are final JDK value classes
+ * (matched exactly, so mutable subclasses of {@link BigDecimal} or {@link BigInteger} are still copied), enums and
+ * additional classes given by name.
+ * <p>
+ * Instance of class which is not loaded by bootstrap class loader is passed through only when its class loader is context
+ * class loader of calling thread or its ancestor, so copy made by real delegate would resolve to the same class anyway.
+ */
+class ImmutableTypes {
+
+	private static final Class<?>[] JDK_TYPES = { String.class, Boolean.class, Character.class, Byte.class, Short.class,
+			Integer.class, Long.class, Float.class, Double.class, BigInteger.class, BigDecimal.class };
+
+	private final Set<String> typeNames = new HashSet<String>();
+
+	/**
+	 * @param additionalTypes names of additional immutable classes, may be <code>null</code>
+	 */
+	ImmutableTypes(String[] additionalTypes) {
+		for (Class<?> type : JDK_TYPES) {
+			typeNames.add(type.getName());
+		}
+		if (additionalTypes != null) {
+			for (String type : additionalTypes) {
+				if (type.trim().length() > 0) {
+					typeNames.add(type.trim());
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if <var>obj</var> is <code>null</code> or can be passed without copying
+	 */
+	public boolean isImmutable(Object obj, ClassLoader contextClassLoader) {
+		if (obj == null) {
+			return true;
+		}
+		Class<?> type = obj.getClass();
+		return (type.isEnum() || typeNames.contains(type.getName())) && isVisible(type, contextClassLoader);
+	}
+
+	/**
+	 * @return <code>true</code> if <var>obj</var> is array of primitives or of immutable types, so its shallow copy is
+	 * as good as deep one
+	 */
+	public boolean isImmutableArray(Object obj, ClassLoader contextClassLoader) {
+		if (obj == null || !obj.getClass().isArray()) {
+			return false;
+		}
+		Class<?> componentType = obj.getClass().getComponentType();
+		return componentType.isPrimitive()
+				|| (componentType.isEnum() || typeNames.contains(componentType.getName())) && isVisible(componentType, contextClassLoader);
+	}
+
+	/**
+	 * Copies arguments of co-located call if all of them are immutable or arrays of immutables. Arrays passed as several
+	 * arguments are copied once, as real delegate would do.
+	 *
+	 * @return copy of <var>objs</var> or <code>null</code> when some argument has to be copied by real delegate
+	 */
+	public Object[] copyAll(Object[] objs, ClassLoader contextClassLoader) {
+		Object[] copy = new Object[objs.length];
+		Map<Object, Object> copiedArrays = null;
+		for (int i = 0; i < objs.length; i++) {
+			Object obj = objs[i];
+			if (isImmutable(obj, contextClassLoader)) {
+				copy[i] = obj;
+			} else if (isImmutableArray(obj, contextClassLoader)) {
+				if (copiedArrays == null) {
+					copiedArrays = new IdentityHashMap<Object, Object>();
+				}
+				Object arrayCopy = copiedArrays.get(obj);
+				if (arrayCopy == null) {
+					arrayCopy = copyArray(obj);
+					copiedArrays.put(obj, arrayCopy);
+				}
+				copy[i] = arrayCopy;
+			} else {
+				return null;
+			}
+		}
+		return copy;
+	}
+
+	public static Object copyArray(Object array) {
+		int length = Array.getLength(array);
+		Object copy = Array.newInstance(array.getClass().getComponentType(), length);
+		System.arraycopy(array, 0, copy, 0, length);
+		return copy;
+	}
+
+	private static boolean isVisible(Class<?> type, ClassLoader contextClassLoader) {
+		ClassLoader typeLoader = type.getClassLoader();
+		if (typeLoader == null) {
+			return true;
+		}
+		for (ClassLoader cl = contextClassLoader; cl != null; cl = cl.getParent()) {
+			if (cl == typeLoader) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Method and arguments of remote call, used to find identical calls. Hash code of arguments is computed once,
+ * when key is created, so key should be created (and compared) in bean class loader.
+ */
+public final class InvocationKey {
+
+	private final Method method;
+
+	private final Object[] arguments;
+
+	private final int hashCode;
+
+	public InvocationKey(Method method, Object[] arguments) {
+		this.method = method;
+		this.arguments = arguments != null ? arguments.clone() : new Object[0];
+		this.hashCode = 31 * method.hashCode() + Arrays.deepHashCode(this.arguments);
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof InvocationKey)) {
+			return false;
+		}
+		InvocationKey other = (InvocationKey) o;
+		return hashCode == other.hashCode && method.equals(other.method) && Arrays.deepEquals(arguments, other.arguments);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public String toString() {
+		return method.getName() + Arrays.deepToString(arguments);
+	}
+
+}
@@ -0,0 +1,192 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.apache.log4j.Logger;
+
+/**
+ * Maps package (directory inside jar, eg <code>com/ibm/ws/orb</code>) to jars containing it, so class loader
+ * can go straight to owning jar instead of searching all jars in turn. Index can be persisted to cache file.
+ * Jars are identified by path, size and modification time, only jars which changed are read again when index
+ * is loaded from cache file.
+ */
+public class JarIndex {
+
+	private static final Logger LOGGER = Logger.getLogger(JarIndex.class);
+
+	private static final String HEADER = "# LibDirClassLoaderFactoryBean jar index v1";
+
+	private static final String ENCODING = "UTF-8";
+
+	private final List<File> jars;
+
+	private final Map<String, List<File>> packageJars = new HashMap<String, List<File>>();
+
+	private JarIndex(List<File> jars, Map<File, IndexedJar> indexedJars) {
+		this.jars = Collections.unmodifiableList(new ArrayList<File>(jars));
+		for (File jar : jars) {
+			for (String pkg : indexedJars.get(jar).packages) {
+				List<File> owners = packageJars.get(pkg);
+				if (owners == null) {
+					owners = new ArrayList<File>(1);
+					packageJars.put(pkg, owners);
+				}
+				owners.add(jar);
+			}
+		}
+	}
+
+	/**
+	 * Builds index for given jars (in class path order) reusing entries from <var>cacheFile</var> for jars which
+	 * did not change. Cache file is rewritten when any jar had to be read. <var>cacheFile</var> may be <code>null</code>.
+	 */
+	public static JarIndex build(List<File> jars, File cacheFile) throws IOException {
+		Map<String, IndexedJar> cached = cacheFile != null && cacheFile.isFile()
+				? readCacheFile(cacheFile) : Collections.<String, IndexedJar>emptyMap();
+
+		Map<File, IndexedJar> indexedJars = new LinkedHashMap<File, IndexedJar>();
+		int reindexed = 0;
+		for (File jar : jars) {
+			IndexedJar indexed = cached.get(jar.getAbsolutePath());
+			if (indexed == null || indexed.length != jar.length() || indexed.lastModified != jar.lastModified()) {
+				indexed = indexJar(jar);
+				reindexed++;
+			}
+			indexedJars.put(jar, indexed);
+		}
+
+		if (cacheFile != null && (reindexed > 0 || cached.size() != jars.size())) {
+			writeCacheFile(cacheFile, indexedJars.values());
+		}
+		LOGGER.debug("Jar index built for " + jars.size() + " jars, " + reindexed + " jars read");
+
+		return new JarIndex(jars, indexedJars);
+	}
+
+	/**
+	 * @param pkg package path using '/' as separator, empty string for root of jar
+	 * @return jars containing given package in class path order or <code>null</code> if none
+	 */
+	public List<File> getJars(String pkg) {
+		return packageJars.get(pkg);
+	}
+
+	/**
+	 * @return all indexed jars in class path order
+	 */
+	public List<File> getJars() {
+		return jars;
+	}
+
+	private static IndexedJar indexJar(File jar) throws IOException {
+		IndexedJar indexed = new IndexedJar(jar.getAbsolutePath(), jar.length(), jar.lastModified());
+		JarFile jarFile = new JarFile(jar);
+		try {
+			for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements(); ) {
+				JarEntry entry = entries.nextElement();
+				if (!entry.isDirectory()) {
+					indexed.packages.add(packageOf(entry.getName()));
+				}
+			}
+		} finally {
+			jarFile.close();
+		}
+		return indexed;
+	}
+
+	static String packageOf(String resourceName) {
+		int idx = resourceName.lastIndexOf('/');
+		return idx < 0 ? "" : resourceName.substring(0, idx);
+	}
+
+	private static Map<String, IndexedJar> readCacheFile(File cacheFile) {
+		Map<String, IndexedJar> indexedJars = new HashMap<String, IndexedJar>();
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), ENCODING));
+			try {
+				if (!HEADER.equals(reader.readLine())) {
+					LOGGER.info("Ignoring jar index cache file in unknown format: " + cacheFile);
+					return indexedJars;
+				}
+
+				IndexedJar current = null;
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.startsWith("\t")) {
+						current.packages.add(line.substring(1));
+					} else {
+						String[] parts = line.split(" ", 4);
+						current = new IndexedJar(parts[3], Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+						indexedJars.put(current.path, current);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (Exception e) {
+			LOGGER.warn("Could not read jar index cache file " + cacheFile + ", rebuilding index", e);
+			indexedJars.clear();
+		}
+		return indexedJars;
+	}
+
+	private static void writeCacheFile(File cacheFile, Iterable<IndexedJar> indexedJars) {
+		File tmpFile = new File(cacheFile.getPath() + ".tmp");
+		try {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), ENCODING));
+			try {
+				writer.write(HEADER);
+				writer.write('\n');
+				for (IndexedJar indexed : indexedJars) {
+					writer.write("jar " + indexed.length + " " + indexed.lastModified + " " + indexed.path + "\n");
+					for (String pkg : indexed.packages) {
+						writer.write("\t" + pkg + "\n");
+					}
+				}
+			} finally {
+				writer.close();
+			}
+			if (!tmpFile.renameTo(cacheFile) && !(cacheFile.delete() && tmpFile.renameTo(cacheFile))) {
+				throw new IOException("Could not rename " + tmpFile + " to " + cacheFile);
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Could not write jar index cache file " + cacheFile, e);
+		}
+	}
+
+	private static class IndexedJar {
+
+		private final String path;
+
+		private final long length;
+
+		private final long lastModified;
+
+		private final Set<String> packages = new HashSet<String>();
+
+		IndexedJar(String path, long length, long lastModified) {
+			this.path = path;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+	}
+
+}
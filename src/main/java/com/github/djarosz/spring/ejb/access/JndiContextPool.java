@@ -0,0 +1,170 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.naming.Context;
+import javax.naming.NamingException;
+import org.apache.log4j.Logger;
+
+/**
+ * Pool of JNDI initial contexts of one {@link ClassLoaderAwareJndiTemplate}. Contexts are created by template (so in its
+ * class loader) and reused by subsequent lookups instead of creating new context, which for WebSphere means new naming
+ * context and often new security login, on every lookup.
+ * <p>
+ * Most recently used context is reused first, so contexts not needed under current load stay idle and are closed
+ * once idle for longer than <var>maxIdle</var> milliseconds. When <var>validationName</var> is set, pooled context is
+ * validated by looking this name up before it is reused.
+ */
+public class JndiContextPool implements JndiContextPoolMBean {
+
+	private static final Logger LOGGER = Logger.getLogger(JndiContextPool.class);
+
+	private final ClassLoaderAwareJndiTemplate template;
+
+	private final int maxSize;
+
+	private final long maxIdle;
+
+	private final String validationName;
+
+	private final BlockingDeque<IdleContext> idleContexts;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong discarded = new AtomicLong();
+
+	/**
+	 * @param maxSize max number of idle contexts kept in pool
+	 * @param maxIdle milliseconds after which idle context is closed
+	 * @param validationName name looked up to validate pooled context, may be <code>null</code>
+	 */
+	public JndiContextPool(ClassLoaderAwareJndiTemplate template, int maxSize, long maxIdle, String validationName) {
+		this.template = template;
+		this.maxSize = maxSize;
+		this.maxIdle = maxIdle;
+		this.validationName = validationName;
+		this.idleContexts = new LinkedBlockingDeque<IdleContext>(maxSize);
+	}
+
+	/**
+	 * @return valid pooled context or new context when none is available
+	 */
+	public Context borrow() throws NamingException {
+		IdleContext idle;
+		while ((idle = idleContexts.pollFirst()) != null) {
+			if (isExpired(idle, System.currentTimeMillis())) {
+				discard(idle.context);
+			} else if (!isValid(idle.context)) {
+				discard(idle.context);
+			} else {
+				hits.incrementAndGet();
+				return idle.context;
+			}
+		}
+
+		misses.incrementAndGet();
+		return template.createInitialContext();
+	}
+
+	/**
+	 * Returns context to pool, context is closed if pool is full.
+	 */
+	public void release(Context context) {
+		long now = System.currentTimeMillis();
+		if (!idleContexts.offerFirst(new IdleContext(context, now))) {
+			template.releaseContext(context);
+		}
+		evictExpired(now);
+	}
+
+	/**
+	 * Closes context instead of returning it to pool, eg after it failed with communication error.
+	 */
+	public void discard(Context context) {
+		discarded.incrementAndGet();
+		template.releaseContext(context);
+	}
+
+	/**
+	 * Closes all idle contexts.
+	 */
+	@Override
+	public void clear() {
+		IdleContext idle;
+		while ((idle = idleContexts.pollFirst()) != null) {
+			template.releaseContext(idle.context);
+		}
+	}
+
+	private void evictExpired(long now) {
+		IdleContext oldest;
+		while ((oldest = idleContexts.peekLast()) != null && isExpired(oldest, now)) {
+			if (idleContexts.removeLastOccurrence(oldest)) {
+				discard(oldest.context);
+			}
+		}
+	}
+
+	private boolean isExpired(IdleContext idle, long now) {
+		return maxIdle > 0 && now - idle.since > maxIdle;
+	}
+
+	private boolean isValid(Context context) {
+		if (validationName == null) {
+			return true;
+		}
+		try {
+			context.lookup(validationName);
+			return true;
+		} catch (NamingException e) {
+			LOGGER.debug("Pooled JNDI context failed validation, discarding it", e);
+			return false;
+		}
+	}
+
+	@Override
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	@Override
+	public long getMaxIdle() {
+		return maxIdle;
+	}
+
+	@Override
+	public int getIdleCount() {
+		return idleContexts.size();
+	}
+
+	@Override
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	@Override
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	@Override
+	public long getDiscardedCount() {
+		return discarded.get();
+	}
+
+	private static class IdleContext {
+
+		private final Context context;
+
+		private final long since;
+
+		IdleContext(Context context, long since) {
+			this.context = context;
+			this.since = since;
+		}
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.github.djarosz.spring.ejb.access;
+
+/**
+ * JMX view of {@link JndiContextPool}.
+ */
+public interface JndiContextPoolMBean {
+
+	int getMaxSize();
+
+	long getMaxIdle();
+
+	int getIdleCount();
+
+	/**
+	 * @return number of lookups which reused pooled context
+	 */
+	long getHitCount();
+
+	/**
+	 * @return number of lookups which had to create new context
+	 */
+	long getMissCount();
+
+	/**
+	 * @return number of contexts closed because they expired, failed validation or failed lookup
+	 */
+	long getDiscardedCount();
+
+	void clear();
+
+}
@@ -0,0 +1,106 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock and allocation free latency histogram with logarithmic buckets. Each power of two range of microseconds
+ * is split into 8 linear buckets, so reported percentiles are within 12.5% of real value. Values over
+ * 2^40 microseconds (about 12 days) are counted in the last bucket.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	private static final int MAX_EXPONENT = 40;
+
+	private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final AtomicLong totalCount = new AtomicLong();
+
+	private final AtomicLong totalMicros = new AtomicLong();
+
+	public void record(long latencyNanos) {
+		long micros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+		counts.incrementAndGet(bucketIndex(micros));
+		totalCount.incrementAndGet();
+		totalMicros.addAndGet(micros);
+	}
+
+	static int bucketIndex(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return micros < 0 ? 0 : (int) micros;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+		int subBucket = (int) ((micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+		return Math.min((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket, BUCKETS - 1);
+	}
+
+	static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+
+	/**
+	 * @param percentile percentile to compute, eg 0.99
+	 * @return latency in microseconds below which given percentile of recorded values is (upper bound of bucket),
+	 * 0 if nothing was recorded
+	 */
+	public long getPercentileMicros(double percentile) {
+		return getPercentileMicros(new LatencyHistogram[] { this }, percentile);
+	}
+
+	/**
+	 * @return percentile of values recorded in all given histograms together, see {@link #getPercentileMicros(double)}
+	 */
+	static long getPercentileMicros(LatencyHistogram[] histograms, double percentile) {
+		long total = 0;
+		for (LatencyHistogram histogram : histograms) {
+			for (int i = 0; i < BUCKETS; i++) {
+				total += histogram.counts.get(i);
+			}
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long target = (long) Math.ceil(percentile * total);
+		long cumulative = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			for (LatencyHistogram histogram : histograms) {
+				cumulative += histogram.counts.get(i);
+			}
+			if (cumulative >= target) {
+				return bucketUpperBound(i);
+			}
+		}
+		return bucketUpperBound(BUCKETS - 1);
+	}
+
+	public long getCount() {
+		return totalCount.get();
+	}
+
+	public long getMeanMicros() {
+		long count = totalCount.get();
+		return count > 0 ? totalMicros.get() / count : 0;
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		totalCount.set(0);
+		totalMicros.set(0);
+	}
+
+}
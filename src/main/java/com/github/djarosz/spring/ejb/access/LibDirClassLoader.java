@@ -0,0 +1,362 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * Class loader created by {@link LibDirClassLoaderFactoryBean}. Classes from <var>isolatedPackages</var>
+ * are loaded child first (defined again by this loader even if parent can load them), all other classes
+ * are delegated to parent as usual. Classes from <var>excludedPackages</var> are never defined by this loader, so shared
+ * loader of layered class loaders can not define its own copies of isolated classes.
+ * <p>
+ * When created with {@link JarIndex} jars are not searched one by one. Classes and resources are read
+ * directly from jars which index lists as containing their package, after <var>urls</var> (the directory itself), so
+ * lookup order is the same as without index. Jars listed in manifest <code>Class-Path</code> are not followed in this
+ * mode.
+ */
+public class LibDirClassLoader extends URLClassLoader {
+
+	/**
+	 * <code>URLClassLoader.close()</code>, <code>null</code> before Java 7.
+	 */
+	private static final Method URL_CLASS_LOADER_CLOSE = findCloseMethod();
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final String[] isolatedPackages;
+
+	private final String[] excludedPackages;
+
+	private final AtomicInteger definedClassCount = new AtomicInteger();
+
+	private final JarIndex jarIndex;
+
+	private final Map<File, URL> jarURLs = new HashMap<File, URL>();
+
+	private final ConcurrentMap<File, JarFile> jarFiles = new ConcurrentHashMap<File, JarFile>();
+
+	public LibDirClassLoader(URL[] urls, ClassLoader parent) {
+		this(urls, parent, new String[0]);
+	}
+
+	public LibDirClassLoader(URL[] urls, ClassLoader parent, String[] isolatedPackages) {
+		super(urls, parent);
+		this.jarIndex = null;
+		this.isolatedPackages = normalizePackages(isolatedPackages);
+		this.excludedPackages = new String[0];
+	}
+
+	/**
+	 * @param urls urls searched as in {@link URLClassLoader}, when <var>jarIndex</var> is given these should not include
+	 * indexed jars
+	 * @param jarIndex index of jars to load classes and resources from, may be <code>null</code>
+	 */
+	public LibDirClassLoader(URL[] urls, ClassLoader parent, String[] isolatedPackages, JarIndex jarIndex)
+			throws MalformedURLException {
+		this(urls, parent, isolatedPackages, new String[0], jarIndex);
+	}
+
+	/**
+	 * @param excludedPackages packages which classes this loader refuses to define (throws
+	 * {@link ClassNotFoundException}), they can still be loaded by parent
+	 * @param jarIndex index of jars to load classes and resources from, may be <code>null</code>
+	 */
+	public LibDirClassLoader(URL[] urls, ClassLoader parent, String[] isolatedPackages, String[] excludedPackages,
+			JarIndex jarIndex) throws MalformedURLException {
+		super(urls, parent);
+		this.jarIndex = jarIndex;
+		if (jarIndex != null) {
+			for (File jar : jarIndex.getJars()) {
+				jarURLs.put(jar, jar.toURI().toURL());
+			}
+		}
+		this.isolatedPackages = normalizePackages(isolatedPackages);
+		this.excludedPackages = normalizePackages(excludedPackages);
+	}
+
+	private static String[] normalizePackages(String[] packages) {
+		String[] normalized = new String[packages.length];
+		for (int i = 0; i < packages.length; i++) {
+			String pkg = packages[i].trim();
+			normalized[i] = pkg.endsWith(".") ? pkg : pkg + ".";
+		}
+		return normalized;
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		if (!isIsolated(name)) {
+			return super.loadClass(name, resolve);
+		}
+
+		synchronized (this) {
+			Class<?> c = findLoadedClass(name);
+			if (c == null) {
+				try {
+					c = findClass(name);
+				} catch (ClassNotFoundException e) {
+					return super.loadClass(name, resolve);
+				}
+			}
+			if (resolve) {
+				resolveClass(c);
+			}
+			return c;
+		}
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		if (startsWithAny(name, excludedPackages)) {
+			throw new ClassNotFoundException(name + " is in isolated package, it can not be defined by shared class loader");
+		}
+
+		Class<?> c = null;
+		// directory comes first, as it does in urls without index
+		if (jarIndex != null && super.findResource(name.replace('.', '/') + ".class") == null) {
+			c = findIndexedClass(name);
+		}
+		if (c == null) {
+			c = super.findClass(name);
+		}
+		definedClassCount.incrementAndGet();
+		return c;
+	}
+
+	private Class<?> findIndexedClass(String name) throws ClassNotFoundException {
+		String path = name.replace('.', '/') + ".class";
+		List<File> jars = jarIndex.getJars(JarIndex.packageOf(path));
+		if (jars == null) {
+			return null;
+		}
+
+		for (File jar : jars) {
+			try {
+				JarFile jarFile = getJarFile(jar);
+				JarEntry entry = jarFile.getJarEntry(path);
+				if (entry != null) {
+					return defineClass(name, jar, jarFile, entry);
+				}
+			} catch (IOException e) {
+				throw new ClassNotFoundException(name, e);
+			}
+		}
+		return null;
+	}
+
+	private Class<?> defineClass(String name, File jar, JarFile jarFile, JarEntry entry) throws IOException {
+		URL jarURL = jarURLs.get(jar);
+		byte[] bytes = readEntry(jarFile, entry);
+
+		int idx = name.lastIndexOf('.');
+		if (idx > 0) {
+			String pkgName = name.substring(0, idx);
+			if (getPackage(pkgName) == null) {
+				try {
+					Manifest manifest = jarFile.getManifest();
+					if (manifest != null) {
+						definePackage(pkgName, manifest, jarURL);
+					} else {
+						definePackage(pkgName, null, null, null, null, null, null, null);
+					}
+				} catch (IllegalArgumentException e) {
+					// package defined concurrently by other thread
+				}
+			}
+		}
+
+		return defineClass(name, bytes, 0, bytes.length, new CodeSource(jarURL, entry.getCodeSigners()));
+	}
+
+	private static byte[] readEntry(JarFile jarFile, JarEntry entry) throws IOException {
+		InputStream in = jarFile.getInputStream(entry);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : 4096);
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	private JarFile getJarFile(File jar) throws IOException {
+		JarFile jarFile = jarFiles.get(jar);
+		if (jarFile == null) {
+			jarFile = new JarFile(jar);
+			JarFile existing = jarFiles.putIfAbsent(jar, jarFile);
+			if (existing != null) {
+				jarFile.close();
+				jarFile = existing;
+			}
+		}
+		return jarFile;
+	}
+
+	@Override
+	public URL findResource(String name) {
+		URL url = super.findResource(name);
+		if (url == null && jarIndex != null) {
+			List<URL> urls = findIndexedResources(name, true);
+			if (!urls.isEmpty()) {
+				return urls.get(0);
+			}
+		}
+		return url;
+	}
+
+	@Override
+	public Enumeration<URL> findResources(String name) throws IOException {
+		if (jarIndex == null) {
+			return super.findResources(name);
+		}
+
+		List<URL> urls = Collections.list(super.findResources(name));
+		urls.addAll(findIndexedResources(name, false));
+		return Collections.enumeration(urls);
+	}
+
+	private List<URL> findIndexedResources(String name, boolean firstOnly) {
+		List<File> jars = jarIndex.getJars(JarIndex.packageOf(name));
+		if (jars == null) {
+			return new ArrayList<URL>(0);
+		}
+
+		List<URL> urls = new ArrayList<URL>(1);
+		for (File jar : jars) {
+			try {
+				if (getJarFile(jar).getEntry(name) != null) {
+					urls.add(new URL("jar:" + jarURLs.get(jar) + "!/" + encodePath(name)));
+					if (firstOnly) {
+						break;
+					}
+				}
+			} catch (IOException e) {
+				// ignore as URLClassLoader does, resource is just not found in this jar
+			}
+		}
+		return urls;
+	}
+
+	/**
+	 * Escapes resource name the way {@link URLClassLoader} does in URLs of resources it finds: characters not allowed in
+	 * URL path (like space or <code>%</code>) and non ASCII characters (as UTF-8) are escaped.
+	 */
+	static String encodePath(String name) {
+		StringBuilder encoded = null;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c > ' ' && c < 0x7F && "%\"#<>?[\\]^`{|}".indexOf(c) < 0) {
+				if (encoded != null) {
+					encoded.append(c);
+				}
+				continue;
+			}
+			if (encoded == null) {
+				encoded = new StringBuilder(name.length() + 16).append(name, 0, i);
+			}
+			int end = Character.isHighSurrogate(c) && i + 1 < name.length() ? i + 2 : i + 1;
+			for (byte b : name.substring(i, end).getBytes(UTF_8)) {
+				encoded.append('%').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+			}
+			i = end - 1;
+		}
+		return encoded != null ? encoded.toString() : name;
+	}
+
+	/**
+	 * @return searched urls including indexed jars
+	 */
+	@Override
+	public URL[] getURLs() {
+		URL[] urls = super.getURLs();
+		if (jarIndex == null) {
+			return urls;
+		}
+
+		List<URL> allURLs = new ArrayList<URL>(urls.length + jarURLs.size());
+		Collections.addAll(allURLs, urls);
+		for (File jar : jarIndex.getJars()) {
+			allURLs.add(jarURLs.get(jar));
+		}
+		return allURLs.toArray(new URL[allURLs.size()]);
+	}
+
+	private static Method findCloseMethod() {
+		try {
+			return URLClassLoader.class.getMethod("close");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private boolean isIsolated(String className) {
+		return startsWithAny(className, isolatedPackages);
+	}
+
+	private static boolean startsWithAny(String className, String[] packages) {
+		for (String pkg : packages) {
+			if (className.startsWith(pkg)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Closes jars opened by this loader, and jars opened by {@link URLClassLoader} when running on Java 7 or newer.
+	 * Classes and resources not loaded yet can not be loaded afterwards.
+	 */
+	public void release() throws IOException {
+		for (JarFile jarFile : jarFiles.values()) {
+			jarFile.close();
+		}
+		jarFiles.clear();
+		if (URL_CLASS_LOADER_CLOSE != null) {
+			try {
+				URL_CLASS_LOADER_CLOSE.invoke(this);
+			} catch (InvocationTargetException e) {
+				if (e.getTargetException() instanceof IOException) {
+					throw (IOException) e.getTargetException();
+				}
+				throw new IllegalStateException("Could not close class loader", e.getTargetException());
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException("Could not close class loader", e);
+			}
+		}
+	}
+
+	/**
+	 * @return number of classes defined by this loader (not including classes delegated to parent)
+	 */
+	public int getDefinedClassCount() {
+		return definedClassCount.get();
+	}
+
+}
@@ -2,10 +2,15 @@ package com.github.djarosz.spring.ejb.access;
 
 import java.io.File;
 import java.io.FileFilter;
-import java.net.MalformedURLException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.ref.WeakReference;
 import java.net.URL;
-import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import org.apache.log4j.Logger;
 import org.springframework.beans.factory.BeanClassLoaderAware;
 import org.springframework.beans.factory.BeanCreationException;
@@ -16,6 +21,20 @@ import org.springframework.beans.factory.InitializingBean;
 /**
  * Creates {@link java.lang.ClassLoader} bean with all classes in directory given as <var>directory</var> property.
  * Also includes a *.jar files in specified directory (optionally searching for then recursively)
+ * <p>
+ * By default every {@link #getObject()} call creates class loader with all jars. When <var>isolatedPackages</var>
+ * are set class loaders are layered: all jars are loaded once by shared parent class loader and each
+ * {@link #getObject()} call creates thin child class loader which defines again only classes from isolated
+ * packages (the ones keeping static or credential state). Everything those classes reference outside isolated
+ * packages is shared, so isolated packages must cover all classes holding per loader state, eg:
+ * <pre>
+ *	&lt;property name="isolatedPackages" value="com.ibm.ws.security,com.ibm.ISecurityUtilityImpl,com.ibm.ws.orb"/&gt;
+ * </pre>
+ * Shared class loader refuses to define classes from isolated packages, so when isolation is incomplete shared class
+ * referencing isolated one fails with {@link NoClassDefFoundError} instead of silently sharing its state.
+ * Directory is scanned for jars only once. With <var>useJarIndex</var> set jars are also indexed once
+ * (see {@link JarIndex}) and created class loaders read classes directly from owning jar. Set <var>jarIndexFile</var>
+ * to persist the index between application restarts.
  */
 public class LibDirClassLoaderFactoryBean implements BeanNameAware, BeanClassLoaderAware, FactoryBean, InitializingBean {
 
@@ -29,6 +48,22 @@ public class LibDirClassLoaderFactoryBean implements BeanNameAware, BeanClassLoa
 
 	private String beanName;
 
+	private String[] isolatedPackages;
+
+	private LibDirClassLoader sharedClassLoader;
+
+	private final List<WeakReference<LibDirClassLoader>> isolatedClassLoaders = new LinkedList<WeakReference<LibDirClassLoader>>();
+
+	private boolean useJarIndex;
+
+	private File jarIndexFile;
+
+	private List<File> jars;
+
+	private JarIndex jarIndex;
+
+	private ClassLoaderLifecycleManager lifecycleManager;
+
 	@Override
 	public void setBeanClassLoader(ClassLoader classLoader) {
 		this.contextClassLoader = classLoader;
@@ -47,18 +82,70 @@ public class LibDirClassLoaderFactoryBean implements BeanNameAware, BeanClassLoa
 
 	@Override
 	public Object getObject() throws Exception {
-		LinkedList<URL> urls = new LinkedList<URL>();
+		if (!isLayered()) {
+			return track(createClassLoader(contextClassLoader, new String[0], new String[0]));
+		}
+
+		LibDirClassLoader isolatedClassLoader = createClassLoader(getSharedClassLoader(), isolatedPackages, new String[0]);
+		synchronized (isolatedClassLoaders) {
+			isolatedClassLoaders.add(new WeakReference<LibDirClassLoader>(isolatedClassLoader));
+		}
+		log("Created isolated class loader. " + getLayerReport());
+
+		return track(isolatedClassLoader);
+	}
+
+	private LibDirClassLoader track(LibDirClassLoader classLoader) {
+		if (lifecycleManager != null) {
+			lifecycleManager.track(classLoader);
+		}
+		return classLoader;
+	}
+
+	private synchronized LibDirClassLoader getSharedClassLoader() throws IOException {
+		if (sharedClassLoader == null) {
+			sharedClassLoader = createClassLoader(contextClassLoader, new String[0], isolatedPackages);
+		}
+		return sharedClassLoader;
+	}
+
+	private LibDirClassLoader createClassLoader(ClassLoader parent, String[] packages, String[] excludedPackages)
+			throws IOException {
 		URL dirURL = directory.toURI().toURL();
+		if (useJarIndex) {
+			return new LibDirClassLoader(new URL[] { dirURL }, parent, packages, excludedPackages, getJarIndex());
+		}
 
-		log("Adding url: " + dirURL);
-		urls.add(dirURL);
-		addJars(urls, directory);
+		List<File> jarFiles = getJars();
+		URL[] urls = new URL[jarFiles.size() + 1];
+		urls[0] = dirURL;
+		for (int i = 0; i < jarFiles.size(); i++) {
+			urls[i + 1] = jarFiles.get(i).toURI().toURL();
+		}
+		return new LibDirClassLoader(urls, parent, packages, excludedPackages, null);
+	}
 
-		return new URLClassLoader(urls.toArray(new URL[urls.size()]), contextClassLoader);
+	private synchronized JarIndex getJarIndex() throws IOException {
+		if (jarIndex == null) {
+			long start = System.currentTimeMillis();
+			jarIndex = JarIndex.build(getJars(), jarIndexFile);
+			log("Jar index ready in " + (System.currentTimeMillis() - start) + " ms");
+		}
+		return jarIndex;
 	}
 
-	private void addJars(LinkedList<URL> urls, File dir) throws MalformedURLException {
-		File[] jars = dir.listFiles(new FileFilter() {
+	private synchronized List<File> getJars() {
+		if (jars == null) {
+			log("Adding url: " + directory);
+			List<File> found = new ArrayList<File>();
+			addJars(found, directory);
+			jars = found;
+		}
+		return jars;
+	}
+
+	private void addJars(List<File> jars, File dir) {
+		File[] files = dir.listFiles(new FileFilter() {
 			@Override
 			public boolean accept(File pathname) {
 				return (recursive && pathname.isDirectory())
@@ -66,13 +153,12 @@ public class LibDirClassLoaderFactoryBean implements BeanNameAware, BeanClassLoa
 			}
 		});
 
-		for (File jar : jars) {
-			if (jar.isDirectory()) {
-				addJars(urls, jar);
+		for (File file : files) {
+			if (file.isDirectory()) {
+				addJars(jars, file);
 			} else {
-				URL jarURL = jar.toURI().toURL();
-				log("Adding url: " + jarURL);
-				urls.add(jar.toURI().toURL());
+				log("Adding url: " + file);
+				jars.add(file);
 			}
 		}
 	}
@@ -95,6 +181,95 @@ public class LibDirClassLoaderFactoryBean implements BeanNameAware, BeanClassLoa
 		this.recursive = recursive;
 	}
 
+	public void setUseJarIndex(boolean useJarIndex) {
+		this.useJarIndex = useJarIndex;
+	}
+
+	public void setJarIndexFile(File jarIndexFile) {
+		this.jarIndexFile = jarIndexFile;
+	}
+
+	public void setIsolatedPackages(String[] isolatedPackages) {
+		this.isolatedPackages = isolatedPackages;
+	}
+
+	/**
+	 * @param lifecycleManager manager releasing created class loaders (isolated ones when layered) once they are not
+	 * used anymore. Shared layer is never released.
+	 */
+	public void setLifecycleManager(ClassLoaderLifecycleManager lifecycleManager) {
+		this.lifecycleManager = lifecycleManager;
+	}
+
+	public boolean isLayered() {
+		return isolatedPackages != null && isolatedPackages.length > 0;
+	}
+
+	/**
+	 * @return number of classes defined by shared parent class loader (0 if not layered)
+	 */
+	public int getSharedClassCount() {
+		LibDirClassLoader shared;
+		synchronized (this) {
+			shared = sharedClassLoader;
+		}
+		return shared != null ? shared.getDefinedClassCount() : 0;
+	}
+
+	/**
+	 * @return number of classes defined by each live isolated class loader
+	 */
+	public List<Integer> getIsolatedClassCounts() {
+		List<Integer> counts = new LinkedList<Integer>();
+		synchronized (isolatedClassLoaders) {
+			for (Iterator<WeakReference<LibDirClassLoader>> it = isolatedClassLoaders.iterator(); it.hasNext(); ) {
+				LibDirClassLoader loader = it.next().get();
+				if (loader == null) {
+					it.remove();
+				} else {
+					counts.add(loader.getDefinedClassCount());
+				}
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Class counts per layer and metaspace (or perm gen) usage. JVM does not report metaspace per class loader
+	 * so per layer usage is estimated proportionally to number of classes defined by the layer.
+	 */
+	public String getLayerReport() {
+		int sharedClasses = getSharedClassCount();
+		List<Integer> isolatedCounts = getIsolatedClassCounts();
+		int isolatedClasses = 0;
+		for (Integer count : isolatedCounts) {
+			isolatedClasses += count;
+		}
+
+		long metaspaceUsed = getMetaspaceUsed();
+		long loadedClasses = ManagementFactory.getClassLoadingMXBean().getLoadedClassCount();
+		long bytesPerClass = loadedClasses > 0 ? metaspaceUsed / loadedClasses : 0;
+
+		return "Shared layer: " + sharedClasses + " classes (~" + toKB(sharedClasses * bytesPerClass) + " KB)"
+				+ ", isolated layers: " + isolatedCounts.size() + " loaders, " + isolatedClasses + " classes (~"
+				+ toKB(isolatedClasses * bytesPerClass) + " KB), per loader: " + isolatedCounts
+				+ ", JVM metaspace used: " + toKB(metaspaceUsed) + " KB for " + loadedClasses + " classes";
+	}
+
+	static long getMetaspaceUsed() {
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getName().contains("Metaspace") || pool.getName().contains("Perm Gen")) {
+				used += pool.getUsage().getUsed();
+			}
+		}
+		return used;
+	}
+
+	private static long toKB(long bytes) {
+		return bytes / 1024;
+	}
+
 	@Override
 	public void setBeanName(String name) {
 		this.beanName = name;
@@ -0,0 +1,182 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.log4j.Logger;
+import org.springframework.remoting.RemoteAccessException;
+import org.springframework.remoting.RemoteConnectFailureException;
+import org.springframework.remoting.RemoteLookupFailureException;
+import org.springframework.remoting.rmi.RmiClientInterceptorUtils;
+
+/**
+ * Spreads calls across {@link RemoteEndpoint}s (cluster members' provider URLs) choosing endpoint with least calls in
+ * flight, either among all endpoints or among two random ones (power of two choices, cheaper with many endpoints and
+ * avoids herding on single endpoint).
+ * <p>
+ * Call which could not connect or look up home is retried on other endpoint as it did not reach the server.
+ * Endpoint is ejected after <var>failureThreshold</var> consecutive remote failures (application exceptions do not count)
+ * and gets calls again after <var>ejectionTime</var> milliseconds. When all endpoints are ejected calls still go to the
+ * one with least calls in flight.
+ */
+public class LoadBalancer {
+
+	private static final Logger LOGGER = Logger.getLogger(LoadBalancer.class);
+
+	public enum Strategy {
+		LEAST_OUTSTANDING,
+		POWER_OF_TWO_CHOICES
+	}
+
+	private final List<RemoteEndpoint> endpoints;
+
+	private final Strategy strategy;
+
+	private final int failureThreshold;
+
+	private final long ejectionTime;
+
+	private final Random random = new Random();
+
+	private final AtomicInteger nextStart = new AtomicInteger();
+
+	public LoadBalancer(List<RemoteEndpoint> endpoints, Strategy strategy, int failureThreshold, long ejectionTime) {
+		this.endpoints = Collections.unmodifiableList(new ArrayList<RemoteEndpoint>(endpoints));
+		this.strategy = strategy;
+		this.failureThreshold = failureThreshold;
+		this.ejectionTime = ejectionTime;
+	}
+
+	/**
+	 * Invokes remote method on selected endpoint, must be called in bean class loader.
+	 */
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		return invoke(invocation, null, null);
+	}
+
+	/**
+	 * @param excluded endpoints not to call (eg the one first attempt of hedged call went to), ignored when there is
+	 * no other endpoint, may be <code>null</code>
+	 * @param selected set endpoints the call goes to are added to, may be <code>null</code>
+	 */
+	Object invoke(MethodInvocation invocation, Set<RemoteEndpoint> excluded, Set<RemoteEndpoint> selected) throws Throwable {
+		Set<RemoteEndpoint> tried = null;
+		if (excluded != null && !excluded.isEmpty() && excluded.size() < endpoints.size()) {
+			tried = new HashSet<RemoteEndpoint>(excluded);
+		}
+		while (true) {
+			RemoteEndpoint endpoint = select(tried);
+			if (selected != null) {
+				selected.add(endpoint);
+			}
+			endpoint.callStarted();
+			try {
+				Object result = endpoint.getInterceptor().invoke(invocation);
+				onSuccess(endpoint);
+				return result;
+			} catch (RemoteConnectFailureException e) {
+				tried = onConnectFailure(endpoint, tried, e);
+			} catch (RemoteLookupFailureException e) {
+				tried = onConnectFailure(endpoint, tried, e);
+			} catch (RemoteAccessException e) {
+				onFailure(endpoint, e);
+				throw e;
+			} catch (RemoteException e) {
+				if (!RmiClientInterceptorUtils.isConnectFailure(e)) {
+					onFailure(endpoint, e);
+					throw e;
+				}
+				tried = onConnectFailure(endpoint, tried, e);
+			} catch (Throwable e) {
+				onSuccess(endpoint); // application exception, endpoint works
+				throw e;
+			} finally {
+				endpoint.callFinished();
+			}
+		}
+	}
+
+	private Set<RemoteEndpoint> onConnectFailure(RemoteEndpoint endpoint, Set<RemoteEndpoint> tried, Exception e) throws Exception {
+		onFailure(endpoint, e);
+		Set<RemoteEndpoint> triedEndpoints = tried != null ? tried : new HashSet<RemoteEndpoint>();
+		triedEndpoints.add(endpoint);
+		if (triedEndpoints.size() >= endpoints.size()) {
+			throw e;
+		}
+		LOGGER.debug("Could not connect to " + endpoint.getProviderUrl() + ", retrying on other endpoint", e);
+		return triedEndpoints;
+	}
+
+	private void onFailure(RemoteEndpoint endpoint, Exception e) {
+		if (endpoint.onFailure(failureThreshold, ejectionTime)) {
+			LOGGER.warn("Endpoint " + endpoint.getProviderUrl() + " ejected for " + ejectionTime + " ms after "
+					+ failureThreshold + " consecutive failures, last: " + e);
+		}
+	}
+
+	private void onSuccess(RemoteEndpoint endpoint) {
+		if (endpoint.onSuccess()) {
+			LOGGER.info("Endpoint " + endpoint.getProviderUrl() + " is working again");
+		}
+	}
+
+	/**
+	 * @param excluded endpoints not to select, may be <code>null</code>
+	 */
+	RemoteEndpoint select(Set<RemoteEndpoint> excluded) {
+		long now = System.currentTimeMillis();
+		List<RemoteEndpoint> candidates = new ArrayList<RemoteEndpoint>(endpoints.size());
+		for (RemoteEndpoint endpoint : endpoints) {
+			if (!endpoint.isEjected(now) && (excluded == null || !excluded.contains(endpoint))) {
+				candidates.add(endpoint);
+			}
+		}
+		if (candidates.isEmpty()) {
+			for (RemoteEndpoint endpoint : endpoints) {
+				if (excluded == null || !excluded.contains(endpoint)) {
+					candidates.add(endpoint);
+				}
+			}
+		}
+
+		int size = candidates.size();
+		if (size == 1) {
+			return candidates.get(0);
+		}
+		if (strategy == Strategy.POWER_OF_TWO_CHOICES) {
+			int first = random.nextInt(size);
+			int second = random.nextInt(size - 1);
+			if (second >= first) {
+				second++;
+			}
+			return leastOutstanding(candidates.get(first), candidates.get(second));
+		}
+
+		// start scan at rotating position so ties are spread evenly
+		int start = (nextStart.getAndIncrement() & Integer.MAX_VALUE) % size;
+		RemoteEndpoint best = candidates.get(start);
+		for (int i = 1; i < size; i++) {
+			best = leastOutstanding(best, candidates.get((start + i) % size));
+		}
+		return best;
+	}
+
+	private static RemoteEndpoint leastOutstanding(RemoteEndpoint first, RemoteEndpoint second) {
+		return second.getOutstanding() < first.getOutstanding() ? second : first;
+	}
+
+	public List<RemoteEndpoint> getEndpoints() {
+		return endpoints;
+	}
+
+	public Strategy getStrategy() {
+		return strategy;
+	}
+
+}
@@ -0,0 +1,183 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Call statistics of single remote method (or JNDI operations). Recording does not allocate nor lock.
+ */
+public class MethodStatistics implements MethodStatisticsMBean {
+
+	private final String name;
+
+	private final AtomicLong calls = new AtomicLong();
+
+	private final AtomicLong errors = new AtomicLong();
+
+	private final AtomicLong timeouts = new AtomicLong();
+
+	private final AtomicLong coalesced = new AtomicLong();
+
+	private final AtomicLong hedges = new AtomicLong();
+
+	private final AtomicLong hedgeWins = new AtomicLong();
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	private final RecentLatency recentLatency = new RecentLatency();
+
+	private volatile long timeoutDeadline;
+
+	private volatile long lastFiredTimeout;
+
+	public MethodStatistics(String name) {
+		this.name = name;
+	}
+
+	public void record(long latencyNanos, boolean failed) {
+		calls.incrementAndGet();
+		if (failed) {
+			errors.incrementAndGet();
+		} else {
+			recentLatency.record(latencyNanos);
+		}
+		latency.record(latencyNanos);
+	}
+
+	/**
+	 * @param timeoutMillis timeout which fired
+	 */
+	public void recordTimeout(long timeoutMillis) {
+		timeouts.incrementAndGet();
+		lastFiredTimeout = timeoutMillis;
+	}
+
+	/**
+	 * @param timeoutDeadline timeout in milliseconds currently used for calls
+	 */
+	public void setTimeoutDeadline(long timeoutDeadline) {
+		this.timeoutDeadline = timeoutDeadline;
+	}
+
+	/**
+	 * Records call which did not go to remote server but waited for result of identical call in flight.
+	 */
+	public void recordCoalesced() {
+		coalesced.incrementAndGet();
+	}
+
+	/**
+	 * Records hedged (second) attempt of call.
+	 */
+	public void recordHedge() {
+		hedges.incrementAndGet();
+	}
+
+	/**
+	 * Records hedged attempt which finished before the first one.
+	 */
+	public void recordHedgeWin() {
+		hedgeWins.incrementAndGet();
+	}
+
+	public LatencyHistogram getLatencyHistogram() {
+		return latency;
+	}
+
+	/**
+	 * @return latency of successful calls made during last minute
+	 */
+	RecentLatency getRecentLatency() {
+		return recentLatency;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public long getCalls() {
+		return calls.get();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.get();
+	}
+
+	@Override
+	public long getTimeouts() {
+		return timeouts.get();
+	}
+
+	@Override
+	public long getTimeoutDeadline() {
+		return timeoutDeadline;
+	}
+
+	@Override
+	public long getLastFiredTimeout() {
+		return lastFiredTimeout;
+	}
+
+	@Override
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+
+	@Override
+	public long getHedges() {
+		return hedges.get();
+	}
+
+	@Override
+	public long getHedgeWins() {
+		return hedgeWins.get();
+	}
+
+	@Override
+	public double getMeanLatency() {
+		return toMillis(latency.getMeanMicros());
+	}
+
+	@Override
+	public double getLatencyP50() {
+		return toMillis(latency.getPercentileMicros(0.5));
+	}
+
+	@Override
+	public double getLatencyP99() {
+		return toMillis(latency.getPercentileMicros(0.99));
+	}
+
+	@Override
+	public double getLatencyP999() {
+		return toMillis(latency.getPercentileMicros(0.999));
+	}
+
+	@Override
+	public void reset() {
+		calls.set(0);
+		errors.set(0);
+		timeouts.set(0);
+		lastFiredTimeout = 0;
+		coalesced.set(0);
+		hedges.set(0);
+		hedgeWins.set(0);
+		latency.reset();
+		recentLatency.reset();
+	}
+
+	private static double toMillis(long micros) {
+		return micros / 1000.0;
+	}
+
+	@Override
+	public String toString() {
+		return name + ": calls=" + getCalls() + ", errors=" + getErrors() + ", timeouts=" + getTimeouts()
+				+ ", timeoutDeadline=" + getTimeoutDeadline() + "ms, coalesced=" + getCoalesced()
+				+ ", hedges=" + getHedges() + ", hedgeWins=" + getHedgeWins()
+				+ ", p50=" + getLatencyP50() + "ms, p99=" + getLatencyP99() + "ms, p999=" + getLatencyP999() + "ms";
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.github.djarosz.spring.ejb.access;
+
+/**
+ * JMX view of {@link MethodStatistics}. Latencies are in milliseconds.
+ */
+public interface MethodStatisticsMBean {
+
+	String getName();
+
+	long getCalls();
+
+	long getErrors();
+
+	long getTimeouts();
+
+	/**
+	 * @return timeout currently used for calls in milliseconds, 0 when calls are not timed out
+	 */
+	long getTimeoutDeadline();
+
+	/**
+	 * @return last timeout which fired in milliseconds
+	 */
+	long getLastFiredTimeout();
+
+	long getCoalesced();
+
+	long getHedges();
+
+	long getHedgeWins();
+
+	double getMeanLatency();
+
+	double getLatencyP50();
+
+	double getLatencyP99();
+
+	double getLatencyP999();
+
+	void reset();
+
+}
@@ -0,0 +1,285 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.log4j.Logger;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+/**
+ * Warms up remote proxy beans (see {@link ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean#warmUp()}) in parallel
+ * once application context is refreshed, instead of each of them looking its home up one after another while context
+ * is created:
+ * <pre>
+ *	&lt;bean class="com.github.djarosz.spring.ejb.access.ParallelStartupCoordinator"&gt;
+ *		&lt;property name="poolSize" value="8"/&gt;
+ *		&lt;property name="timeout" value="60000"/&gt;
+ *	&lt;/bean&gt;
+ * </pre>
+ * Spring creates singletons one by one holding global lock, so proxies should have <var>lookupHomeOnStartup</var> set
+ * to <code>false</code> (and <var>warmUpOnStartup</var> not set), their creation is cheap then. The expensive part of
+ * startup - loading ORB classes from jars of each proxy class loader, ORB initialization, security login, JNDI lookup and
+ * <code>create()</code> - is done by warm up of all proxies (listed in <var>beanNames</var>, all in context by default)
+ * running on pool of <var>poolSize</var> threads.
+ * <p>
+ * Warm up taking longer than <var>timeout</var> milliseconds is interrupted. Thread stuck in call which ignores
+ * interruption (eg CORBA connect) can not take other proxies, so whole warm up is also limited to <var>timeout</var>
+ * times number of proxies per thread, proxies which did not get thread by then are timed out too. Failed and timed out
+ * proxies look their homes up on first call as usual, unless <var>failOnError</var> is set, which fails context refresh.
+ * Time each proxy waited for thread and took to warm up is logged as startup report (see {@link #getReport()}).
+ */
+public class ParallelStartupCoordinator implements ApplicationContextAware, ApplicationListener, DisposableBean {
+
+	private static final Logger LOGGER = Logger.getLogger(ParallelStartupCoordinator.class);
+
+	private ApplicationContext applicationContext;
+
+	private String[] beanNames;
+
+	private int poolSize = 8;
+
+	private long timeout = 60000;
+
+	private boolean failOnError;
+
+	private ExecutorService executor;
+
+	private volatile List<WarmUpTask> tasks;
+
+	private volatile long totalMillis;
+
+	@Override
+	public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+		this.applicationContext = applicationContext;
+	}
+
+	@Override
+	public void onApplicationEvent(ApplicationEvent event) {
+		if (event instanceof ContextRefreshedEvent && event.getSource() == applicationContext) {
+			warmUpAll();
+		}
+	}
+
+	/**
+	 * Warms up all proxies and waits till they are done (or timed out).
+	 */
+	public void warmUpAll() {
+		long start = System.nanoTime();
+		List<WarmUpTask> started = new ArrayList<WarmUpTask>();
+		executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ClassLoaderThreadFactory(ParallelStartupCoordinator.class.getClassLoader(), "Startup"));
+		try {
+			for (Map.Entry<String, ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean> proxy : getProxies().entrySet()) {
+				WarmUpTask task = new WarmUpTask(proxy.getKey(), proxy.getValue());
+				task.future = executor.submit(task);
+				started.add(task);
+			}
+			// time all proxies need when each of them takes whole timeout
+			int rounds = (started.size() + poolSize - 1) / poolSize;
+			long deadlineNanos = start + TimeUnit.MILLISECONDS.toNanos(timeout) * rounds;
+			for (WarmUpTask task : started) {
+				await(task, deadlineNanos);
+			}
+		} finally {
+			executor.shutdownNow();
+			executor = null;
+		}
+		tasks = started;
+		totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		LOGGER.info(getReport());
+
+		if (failOnError) {
+			for (WarmUpTask task : started) {
+				if (task.error != null || task.timedOut) {
+					throw new BeanInitializationException("Warm up of remote EJB proxy [" + task.beanName + "] "
+							+ (task.timedOut ? "timed out" : "failed"), task.error);
+				}
+			}
+		}
+	}
+
+	private Map<String, ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean> getProxies() {
+		Map<String, ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean> proxies =
+				new LinkedHashMap<String, ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean>();
+		if (beanNames != null) {
+			for (String beanName : beanNames) {
+				proxies.put(beanName, (ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean) applicationContext.getBean(
+						BeanFactory.FACTORY_BEAN_PREFIX + beanName, ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean.class));
+			}
+			return proxies;
+		}
+
+		Map<?, ?> factories = applicationContext.getBeansOfType(ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean.class, false, false);
+		for (Map.Entry<?, ?> factory : factories.entrySet()) {
+			String beanName = (String) factory.getKey();
+			if (beanName.startsWith(BeanFactory.FACTORY_BEAN_PREFIX)) {
+				beanName = beanName.substring(BeanFactory.FACTORY_BEAN_PREFIX.length());
+			}
+			proxies.put(beanName, (ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean) factory.getValue());
+		}
+		return proxies;
+	}
+
+	/**
+	 * Waits for task till it finishes or runs for longer than timeout (time task waited for thread does not count), but
+	 * not after <var>deadlineNanos</var>, so task which did not get thread because all threads are stuck is timed out too.
+	 */
+	private void await(WarmUpTask task, long deadlineNanos) {
+		try {
+			while (true) {
+				long startNanos = task.startNanos;
+				long endNanos = startNanos == 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100)
+						: startNanos + TimeUnit.MILLISECONDS.toNanos(timeout);
+				long waitNanos = Math.min(endNanos, deadlineNanos) - System.nanoTime();
+				try {
+					task.future.get(Math.max(waitNanos, 0), TimeUnit.NANOSECONDS);
+					return;
+				} catch (TimeoutException e) {
+					if (startNanos != 0 || System.nanoTime() - deadlineNanos >= 0) {
+						task.timedOut = true;
+						task.future.cancel(true);
+						return;
+					}
+				}
+			}
+		} catch (ExecutionException e) {
+			// recorded by task itself
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			task.future.cancel(true);
+		}
+	}
+
+	/**
+	 * @return time each proxy waited for thread and took to warm up, from last {@link #warmUpAll()}
+	 */
+	public String getReport() {
+		List<WarmUpTask> finished = tasks;
+		if (finished == null) {
+			return "Remote EJB proxies not warmed up yet";
+		}
+
+		long sumMillis = 0;
+		int failures = 0;
+		StringBuilder details = new StringBuilder();
+		for (WarmUpTask task : finished) {
+			long warmUpMillis = task.getWarmUpMillis();
+			sumMillis += warmUpMillis;
+			failures += task.error != null || task.timedOut ? 1 : 0;
+			details.append("\n  ").append(task.beanName).append(": ").append(task.getStatus())
+					.append(", waited ").append(task.getWaitMillis()).append(" ms, warm up ").append(warmUpMillis).append(" ms");
+		}
+		return "Warmed up " + finished.size() + " remote EJB proxies on " + poolSize + " threads in " + totalMillis
+				+ " ms (" + sumMillis + " ms if done one by one), " + failures + " failed or timed out:" + details;
+	}
+
+	@Override
+	public void destroy() {
+		ExecutorService running = executor;
+		if (running != null) {
+			running.shutdownNow();
+		}
+	}
+
+	/**
+	 * @param beanNames names of proxy beans to warm up, by default all {@link ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean}s
+	 * in context
+	 */
+	public void setBeanNames(String[] beanNames) {
+		this.beanNames = beanNames;
+	}
+
+	/**
+	 * @param poolSize number of proxies warmed up at once, 8 by default
+	 */
+	public void setPoolSize(int poolSize) {
+		this.poolSize = poolSize;
+	}
+
+	/**
+	 * @param timeout max milliseconds warm up of single proxy can take, 60000 by default
+	 */
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * @param failOnError whether failed or timed out warm up fails context refresh, <code>false</code> by default
+	 */
+	public void setFailOnError(boolean failOnError) {
+		this.failOnError = failOnError;
+	}
+
+	private static class WarmUpTask implements Runnable {
+
+		private final String beanName;
+
+		private final ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean proxy;
+
+		private final long submitNanos = System.nanoTime();
+
+		private volatile long startNanos;
+
+		private volatile long endNanos;
+
+		private volatile Throwable error;
+
+		private volatile boolean timedOut;
+
+		private Future<?> future;
+
+		WarmUpTask(String beanName, ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean proxy) {
+			this.beanName = beanName;
+			this.proxy = proxy;
+		}
+
+		@Override
+		public void run() {
+			startNanos = System.nanoTime();
+			try {
+				proxy.warmUp();
+			} catch (Throwable e) {
+				error = e;
+				LOGGER.warn("Warm up of remote EJB proxy [" + beanName + "] failed, it will be retried on first call", e);
+			} finally {
+				endNanos = System.nanoTime();
+			}
+		}
+
+		String getStatus() {
+			if (timedOut) {
+				return startNanos != 0 ? "TIMED OUT" : "TIMED OUT (not started)";
+			}
+			return error != null ? "FAILED (" + error + ")" : "OK";
+		}
+
+		long getWaitMillis() {
+			return startNanos != 0 ? TimeUnit.NANOSECONDS.toMillis(startNanos - submitNanos) : 0;
+		}
+
+		long getWarmUpMillis() {
+			if (startNanos == 0) {
+				return 0;
+			}
+			return TimeUnit.NANOSECONDS.toMillis((endNanos != 0 ? endNanos : System.nanoTime()) - startNanos);
+		}
+
+	}
+
+}
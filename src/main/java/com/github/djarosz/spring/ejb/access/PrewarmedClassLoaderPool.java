@@ -0,0 +1,209 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Hands out class loaders created in advance by background threads. Each {@link #getObject()} call returns
+ * different class loader so this can be used instead of prototype {@link LibDirClassLoaderFactoryBean}
+ * when each proxy bean needs its own class loader, but without paying class loader creation and class loading
+ * cost when proxy bean is created.
+ * <p>
+ * Classes listed in <var>preloadClasses</var> are loaded (and optionally initialized) in every pooled class loader.
+ * Combine with {@link ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean#setWarmUpOnStartup(boolean)} to
+ * also perform home lookup in background.
+ * <pre>
+ *	&lt;bean id="ibmCorbaClassloaderFactory" class="LibDirClassLoaderFactoryBean"&gt;
+ *		&lt;property name="directory" value="/some/dir//lib/websphere"/&gt;
+ *		&lt;property name="recursive" value="true"/&gt;
+ *	&lt;/bean&gt;
+ *
+ *	&lt;bean id="ibmCorbaClassloader" class="PrewarmedClassLoaderPool"&gt;
+ *		&lt;property name="classLoaderFactory" ref="&amp;ibmCorbaClassloaderFactory"/&gt;
+ *		&lt;property name="size" value="40"/&gt;
+ *		&lt;property name="preloadClasses" value="com.ibm.rmi.iiop.ORB,com.ibm.ws.orb.WSUtilDelegateImpl"/&gt;
+ *	&lt;/bean&gt;
+ * </pre>
+ */
+public class PrewarmedClassLoaderPool implements BeanNameAware, FactoryBean, InitializingBean, DisposableBean {
+
+	private static final Logger LOGGER = Logger.getLogger(PrewarmedClassLoaderPool.class);
+
+	private FactoryBean classLoaderFactory;
+
+	private int size = 1;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	private String[] preloadClasses = new String[0];
+
+	private boolean initializePreloadedClasses;
+
+	private boolean replenish;
+
+	private String beanName;
+
+	private ExecutorService executor;
+
+	private final BlockingQueue<Future<ClassLoader>> pool = new LinkedBlockingQueue<Future<ClassLoader>>();
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		if (classLoaderFactory == null) {
+			throw new BeanCreationException("Pool[" + beanName + "]: classLoaderFactory is required.");
+		}
+
+		executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, size)), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ClassLoaderPool-" + beanName + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		for (int i = 0; i < size; i++) {
+			submitCreate();
+		}
+	}
+
+	private void submitCreate() {
+		pool.add(executor.submit(new Callable<ClassLoader>() {
+			@Override
+			public ClassLoader call() throws Exception {
+				return createClassLoader();
+			}
+		}));
+	}
+
+	private ClassLoader createClassLoader() throws Exception {
+		long start = System.currentTimeMillis();
+		final ClassLoader classLoader = (ClassLoader) classLoaderFactory.getObject();
+
+		try {
+			ClassLoaderActionHelper.doInClassLoader(classLoader, new ClassLoaderActionCallback<Object>() {
+				@Override
+				public Object execute() throws Throwable {
+					for (String className : preloadClasses) {
+						try {
+							Class.forName(className.trim(), initializePreloadedClasses, classLoader);
+						} catch (Throwable e) {
+							LOGGER.warn("Pool[" + beanName + "]: could not preload class " + className, e);
+						}
+					}
+					return null;
+				}
+			});
+		} catch (Throwable e) {
+			throw new ClassLoaderActionRuntimeException(e);
+		}
+
+		LOGGER.info("Pool[" + beanName + "]: class loader " + classLoader + " ready in " + (System.currentTimeMillis() - start) + " ms");
+		return classLoader;
+	}
+
+	/**
+	 * Returns next pre-warmed class loader, waiting for it if it is still being created. When pool is empty
+	 * class loader is created by calling thread.
+	 */
+	@Override
+	public Object getObject() throws Exception {
+		Future<ClassLoader> next = pool.poll();
+		if (replenish) {
+			submitCreate();
+		}
+
+		if (next == null) {
+			LOGGER.info("Pool[" + beanName + "]: pool is empty, creating class loader");
+			return createClassLoader();
+		}
+
+		try {
+			return next.get();
+		} catch (ExecutionException e) {
+			LOGGER.warn("Pool[" + beanName + "]: background class loader creation failed, creating class loader", e.getCause());
+			return createClassLoader();
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	@Override
+	public Class getObjectType() {
+		return ClassLoader.class;
+	}
+
+	@Override
+	public boolean isSingleton() {
+		return false;
+	}
+
+	/**
+	 * @return number of class loaders waiting in the pool (ready or being created)
+	 */
+	public int getAvailable() {
+		return pool.size();
+	}
+
+	/**
+	 * @param classLoaderFactory factory creating class loaders, usually {@link LibDirClassLoaderFactoryBean}
+	 */
+	public void setClassLoaderFactory(FactoryBean classLoaderFactory) {
+		this.classLoaderFactory = classLoaderFactory;
+	}
+
+	/**
+	 * @param size number of class loaders created on startup
+	 */
+	public void setSize(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * @param threads max number of threads creating class loaders
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public void setPreloadClasses(String[] preloadClasses) {
+		this.preloadClasses = preloadClasses;
+	}
+
+	public void setInitializePreloadedClasses(boolean initializePreloadedClasses) {
+		this.initializePreloadedClasses = initializePreloadedClasses;
+	}
+
+	/**
+	 * @param replenish when <code>true</code> new class loader is created in background each time one is taken from pool
+	 */
+	public void setReplenish(boolean replenish) {
+		this.replenish = replenish;
+	}
+
+	@Override
+	public void setBeanName(String name) {
+		this.beanName = name;
+	}
+
+}
@@ -0,0 +1,88 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Latency of successful calls made during last minute, used to derive adaptive timeouts and hedge delays. Unlike
+ * {@link MethodStatistics#getLatencyHistogram()} it forgets old calls, so it follows latency changes after long uptime,
+ * and it ignores failed calls, which fail fast (rejected by bulkhead, connection refused) and would drag percentiles down.
+ * <p>
+ * Window is split into 6 slices of 10 seconds, each with its own {@link LatencyHistogram}. Slice is reset when it is
+ * reused after whole window passed, so percentiles cover between 50 and 60 seconds of calls.
+ */
+class RecentLatency {
+
+	private static final int SLICES = 6;
+
+	private static final long SLICE_MILLIS = 10000;
+
+	private final LatencyHistogram[] slices = new LatencyHistogram[SLICES];
+
+	/**
+	 * Number of time slice (current time divided by slice length) each slice records.
+	 */
+	private final long[] sliceEpochs = new long[SLICES];
+
+	RecentLatency() {
+		for (int i = 0; i < SLICES; i++) {
+			slices[i] = new LatencyHistogram();
+		}
+	}
+
+	public void record(long latencyNanos) {
+		getSlice(System.currentTimeMillis() / SLICE_MILLIS).record(latencyNanos);
+	}
+
+	private LatencyHistogram getSlice(long epoch) {
+		int idx = (int) (epoch % SLICES);
+		synchronized (sliceEpochs) {
+			if (sliceEpochs[idx] != epoch) {
+				slices[idx].reset();
+				sliceEpochs[idx] = epoch;
+			}
+		}
+		return slices[idx];
+	}
+
+	/**
+	 * @return number of successful calls recorded during last minute
+	 */
+	public long getCount() {
+		long count = 0;
+		for (LatencyHistogram slice : getRecentSlices()) {
+			count += slice.getCount();
+		}
+		return count;
+	}
+
+	/**
+	 * @see LatencyHistogram#getPercentileMicros(double)
+	 */
+	public long getPercentileMicros(double percentile) {
+		List<LatencyHistogram> recent = getRecentSlices();
+		return LatencyHistogram.getPercentileMicros(recent.toArray(new LatencyHistogram[recent.size()]), percentile);
+	}
+
+	private List<LatencyHistogram> getRecentSlices() {
+		long epoch = System.currentTimeMillis() / SLICE_MILLIS;
+		List<LatencyHistogram> recent = new ArrayList<LatencyHistogram>(SLICES);
+		synchronized (sliceEpochs) {
+			for (int i = 0; i < SLICES; i++) {
+				if (epoch - sliceEpochs[i] < SLICES) {
+					recent.add(slices[i]);
+				}
+			}
+		}
+		return recent;
+	}
+
+	public void reset() {
+		synchronized (sliceEpochs) {
+			for (int i = 0; i < SLICES; i++) {
+				slices[i].reset();
+			}
+		}
+	}
+
+}
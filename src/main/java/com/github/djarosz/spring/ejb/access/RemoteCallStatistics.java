@@ -0,0 +1,155 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.log4j.Logger;
+
+/**
+ * Statistics of all business methods of one remote session bean proxy plus its JNDI operations. Statistics
+ * objects are created up front so looking them up on each call is a read only map access.
+ * <p>
+ * Statistics can be exported as JMX MBeans named
+ * <code>com.github.djarosz.spring.ejb.access:type=RemoteEJB,bean=&lt;bean name&gt;,method=&lt;method&gt;</code>,
+ * JNDI context pool (if any) is exported as <code>type=JndiContextPool,bean=&lt;bean name&gt;</code> and result cache
+ * (if any) as <code>type=ResultCache,bean=&lt;bean name&gt;</code> and circuit breaker (if any) as
+ * <code>type=CircuitBreaker,bean=&lt;bean name&gt;</code>.
+ */
+public class RemoteCallStatistics {
+
+	private static final Logger LOGGER = Logger.getLogger(RemoteCallStatistics.class);
+
+	public static final String JMX_DOMAIN = "com.github.djarosz.spring.ejb.access";
+
+	public static final String JNDI_STATISTICS_NAME = "jndi";
+
+	private final String beanName;
+
+	private final Map<Method, MethodStatistics> methodStatistics = new HashMap<Method, MethodStatistics>();
+
+	private final MethodStatistics jndiStatistics = new MethodStatistics(JNDI_STATISTICS_NAME);
+
+	private final List<ObjectName> registeredNames = new LinkedList<ObjectName>();
+
+	private JndiContextPool jndiContextPool;
+
+	private ResultCache resultCache;
+
+	private CircuitBreaker circuitBreaker;
+
+	private MBeanServer mbeanServer;
+
+	public RemoteCallStatistics(String beanName, Class businessInterface) {
+		this.beanName = beanName;
+
+		Map<String, Integer> overloads = new HashMap<String, Integer>();
+		for (Method method : businessInterface.getMethods()) {
+			Integer count = overloads.get(method.getName());
+			overloads.put(method.getName(), count == null ? 1 : count + 1);
+		}
+		for (Method method : businessInterface.getMethods()) {
+			String name = overloads.get(method.getName()) > 1 ? signature(method) : method.getName();
+			methodStatistics.put(method, new MethodStatistics(name));
+		}
+	}
+
+	private static String signature(Method method) {
+		StringBuilder signature = new StringBuilder(method.getName()).append('(');
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (i > 0) {
+				signature.append(',');
+			}
+			signature.append(parameterTypes[i].getSimpleName());
+		}
+		return signature.append(')').toString();
+	}
+
+	/**
+	 * @return statistics of given business method or <code>null</code> if method is not part of business interface
+	 */
+	public MethodStatistics get(Method method) {
+		return methodStatistics.get(method);
+	}
+
+	public MethodStatistics getJndiStatistics() {
+		return jndiStatistics;
+	}
+
+	public void setJndiContextPool(JndiContextPool jndiContextPool) {
+		this.jndiContextPool = jndiContextPool;
+	}
+
+	public JndiContextPool getJndiContextPool() {
+		return jndiContextPool;
+	}
+
+	public void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	public ResultCache getResultCache() {
+		return resultCache;
+	}
+
+	public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	public Collection<MethodStatistics> getMethodStatistics() {
+		return Collections.unmodifiableCollection(methodStatistics.values());
+	}
+
+	public synchronized void registerMBeans(MBeanServer server) {
+		mbeanServer = server;
+		register(jndiStatistics, "type=RemoteEJB,bean=" + ObjectName.quote(beanName) + ",method=" + ObjectName.quote(jndiStatistics.getName()));
+		for (MethodStatistics statistics : methodStatistics.values()) {
+			register(statistics, "type=RemoteEJB,bean=" + ObjectName.quote(beanName) + ",method=" + ObjectName.quote(statistics.getName()));
+		}
+		if (jndiContextPool != null) {
+			register(jndiContextPool, "type=JndiContextPool,bean=" + ObjectName.quote(beanName));
+		}
+		if (resultCache != null) {
+			register(resultCache, "type=ResultCache,bean=" + ObjectName.quote(beanName));
+		}
+		if (circuitBreaker != null) {
+			register(circuitBreaker, "type=CircuitBreaker,bean=" + ObjectName.quote(beanName));
+		}
+	}
+
+	private void register(Object mbean, String keys) {
+		try {
+			ObjectName name = new ObjectName(JMX_DOMAIN + ":" + keys);
+			if (mbeanServer.isRegistered(name)) {
+				mbeanServer.unregisterMBean(name);
+			}
+			mbeanServer.registerMBean(mbean, name);
+			registeredNames.add(name);
+		} catch (JMException e) {
+			LOGGER.warn("Could not register statistics MBean " + keys, e);
+		}
+	}
+
+	public synchronized void unregisterMBeans() {
+		for (ObjectName name : registeredNames) {
+			try {
+				mbeanServer.unregisterMBean(name);
+			} catch (JMException e) {
+				LOGGER.debug("Could not unregister MBean " + name, e);
+			}
+		}
+		registeredNames.clear();
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.ejb.access.SimpleRemoteSlsbInvokerInterceptor;
+
+/**
+ * One provider URL of {@link LoadBalancer} with its own home lookup and cached home (kept by <var>interceptor</var>),
+ * number of calls in flight and failure state.
+ */
+public class RemoteEndpoint {
+
+	private final String providerUrl;
+
+	private final SimpleRemoteSlsbInvokerInterceptor interceptor;
+
+	private final AtomicInteger outstanding = new AtomicInteger();
+
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+	private final AtomicLong calls = new AtomicLong();
+
+	private final AtomicLong failures = new AtomicLong();
+
+	private final AtomicLong ejections = new AtomicLong();
+
+	private volatile long ejectedUntil;
+
+	public RemoteEndpoint(String providerUrl, SimpleRemoteSlsbInvokerInterceptor interceptor) {
+		this.providerUrl = providerUrl;
+		this.interceptor = interceptor;
+	}
+
+	SimpleRemoteSlsbInvokerInterceptor getInterceptor() {
+		return interceptor;
+	}
+
+	void callStarted() {
+		outstanding.incrementAndGet();
+		calls.incrementAndGet();
+	}
+
+	void callFinished() {
+		outstanding.decrementAndGet();
+	}
+
+	/**
+	 * @return <code>true</code> if endpoint was ejected (not in previous ejection)
+	 */
+	boolean onFailure(int failureThreshold, long ejectionTime) {
+		failures.incrementAndGet();
+		if (consecutiveFailures.incrementAndGet() < failureThreshold) {
+			return false;
+		}
+
+		long now = System.currentTimeMillis();
+		if (now < ejectedUntil) {
+			return false;
+		}
+		ejectedUntil = now + ejectionTime;
+		ejections.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * @return <code>true</code> if endpoint was failing before this call
+	 */
+	boolean onSuccess() {
+		if (consecutiveFailures.get() == 0) {
+			return false;
+		}
+		ejectedUntil = 0;
+		return consecutiveFailures.getAndSet(0) > 0;
+	}
+
+	/**
+	 * Endpoint which failed <var>failureThreshold</var> times in a row is ejected for <var>ejectionTime</var>.
+	 * After that it gets calls again, first failure ejects it again, first success re-admits it.
+	 */
+	public boolean isEjected(long now) {
+		return now < ejectedUntil;
+	}
+
+	public String getProviderUrl() {
+		return providerUrl;
+	}
+
+	public int getOutstanding() {
+		return outstanding.get();
+	}
+
+	public long getCalls() {
+		return calls.get();
+	}
+
+	public long getFailures() {
+		return failures.get();
+	}
+
+	public long getEjections() {
+		return ejections.get();
+	}
+
+	@Override
+	public String toString() {
+		return providerUrl + ": outstanding=" + getOutstanding() + ", calls=" + getCalls() + ", failures=" + getFailures()
+				+ ", ejections=" + getEjections() + (isEjected(System.currentTimeMillis()) ? " (ejected)" : "");
+	}
+
+}
@@ -0,0 +1,181 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of remote method results keyed by method and arguments. Each entry expires after TTL given when it
+ * was put. When cache is full entry is evicted according to {@link EvictionPolicy}.
+ * <p>
+ * Keys are compared in calling thread so cache should be accessed in bean class loader.
+ * Cached results are returned to all callers as is (not copied), so they must not be modified.
+ */
+public class ResultCache implements ResultCacheMBean {
+
+	/**
+	 * Number of oldest entries examined to find least frequently used one.
+	 */
+	private static final int LFU_SAMPLE_SIZE = 16;
+
+	public enum EvictionPolicy {
+		/**
+		 * Evicts least recently used entry.
+		 */
+		LRU,
+		/**
+		 * Evicts least frequently used entry among oldest entries.
+		 */
+		LFU
+	}
+
+	private final int maxSize;
+
+	private final EvictionPolicy evictionPolicy;
+
+	private final LinkedHashMap<InvocationKey, Entry> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	public ResultCache(int maxSize, EvictionPolicy evictionPolicy) {
+		this.maxSize = maxSize;
+		this.evictionPolicy = evictionPolicy;
+		this.entries = new LinkedHashMap<InvocationKey, Entry>(16, 0.75f, evictionPolicy == EvictionPolicy.LRU);
+	}
+
+	/**
+	 * @return cached entry or <code>null</code> if there is no entry or it expired
+	 */
+	public Entry get(InvocationKey key) {
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+			if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+				entries.remove(key);
+				entry = null;
+			}
+			if (entry != null) {
+				entry.hits++;
+			}
+		}
+
+		if (entry != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return entry;
+	}
+
+	public void put(InvocationKey key, Object result, long ttl) {
+		Entry entry = new Entry(result, System.currentTimeMillis() + ttl);
+		synchronized (entries) {
+			if (entries.put(key, entry) == null && entries.size() > maxSize) {
+				evict();
+			}
+		}
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<InvocationKey, Entry>> iterator = entries.entrySet().iterator();
+		if (evictionPolicy == EvictionPolicy.LRU) {
+			iterator.next();
+			iterator.remove();
+		} else {
+			InvocationKey victim = null;
+			long victimHits = Long.MAX_VALUE;
+			long now = System.currentTimeMillis();
+			for (int i = 0; i < LFU_SAMPLE_SIZE && iterator.hasNext(); i++) {
+				Map.Entry<InvocationKey, Entry> candidate = iterator.next();
+				if (candidate.getValue().isExpired(now)) {
+					victim = candidate.getKey();
+					break;
+				}
+				if (candidate.getValue().hits < victimHits) {
+					victim = candidate.getKey();
+					victimHits = candidate.getValue().hits;
+				}
+			}
+			entries.remove(victim);
+		}
+		evictions.incrementAndGet();
+	}
+
+	@Override
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	@Override
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	@Override
+	public int getSize() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	@Override
+	public String getEvictionPolicy() {
+		return evictionPolicy.name();
+	}
+
+	@Override
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	@Override
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	@Override
+	public double getHitRatio() {
+		long hitCount = hits.get();
+		long total = hitCount + misses.get();
+		return total == 0 ? 0 : (double) hitCount / total;
+	}
+
+	@Override
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * Cached result, which may be <code>null</code>.
+	 */
+	public static final class Entry {
+
+		private final Object result;
+
+		private final long expiresAt;
+
+		// guarded by cache lock
+		private long hits;
+
+		Entry(Object result, long expiresAt) {
+			this.result = result;
+			this.expiresAt = expiresAt;
+		}
+
+		public Object getResult() {
+			return result;
+		}
+
+		boolean isExpired(long now) {
+			return now >= expiresAt;
+		}
+	}
+
+}
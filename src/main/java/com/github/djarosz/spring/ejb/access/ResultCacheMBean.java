@@ -0,0 +1,24 @@
+package com.github.djarosz.spring.ejb.access;
+
+/**
+ * JMX view of {@link ResultCache}.
+ */
+public interface ResultCacheMBean {
+
+	int getMaxSize();
+
+	int getSize();
+
+	String getEvictionPolicy();
+
+	long getHitCount();
+
+	long getMissCount();
+
+	double getHitRatio();
+
+	long getEvictionCount();
+
+	void clear();
+
+}
@@ -0,0 +1,92 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Bulkhead} with fixed limit of concurrent calls. Calls over the limit wait up to <var>maxWait</var>
+ * milliseconds (0 means reject immediately).
+ */
+public class SemaphoreBulkhead implements Bulkhead {
+
+	private int maxConcurrentCalls = 10;
+
+	private long maxWait;
+
+	private volatile Semaphore semaphore;
+
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	@Override
+	public boolean tryAcquire() throws InterruptedException {
+		Semaphore permits = getSemaphore();
+		if (permits.tryAcquire()) {
+			return true;
+		}
+
+		boolean acquired = false;
+		if (maxWait > 0) {
+			waiting.incrementAndGet();
+			try {
+				acquired = permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS);
+			} finally {
+				waiting.decrementAndGet();
+			}
+		}
+		if (!acquired) {
+			rejected.incrementAndGet();
+		}
+		return acquired;
+	}
+
+	@Override
+	public void release(long latencyNanos, boolean failed) {
+		getSemaphore().release();
+	}
+
+	private Semaphore getSemaphore() {
+		Semaphore permits = semaphore;
+		if (permits == null) {
+			synchronized (this) {
+				if (semaphore == null) {
+					semaphore = new Semaphore(maxConcurrentCalls, true);
+				}
+				permits = semaphore;
+			}
+		}
+		return permits;
+	}
+
+	@Override
+	public int getInFlight() {
+		return maxConcurrentCalls - getSemaphore().availablePermits();
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return waiting.get();
+	}
+
+	@Override
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	@Override
+	public int getLimit() {
+		return maxConcurrentCalls;
+	}
+
+	public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+		this.maxConcurrentCalls = maxConcurrentCalls;
+	}
+
+	public void setMaxWait(long maxWait) {
+		this.maxWait = maxWait;
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * {@link MethodInvocation} without interceptor chain. Used to pass calls made on other proxies (eg asynchronous
+ * one) to remote session bean interceptor which only needs method and arguments.
+ */
+class SimpleMethodInvocation implements MethodInvocation {
+
+	private final Object proxy;
+
+	private final Method method;
+
+	private final Object[] arguments;
+
+	SimpleMethodInvocation(Object proxy, Method method, Object[] arguments) {
+		this.proxy = proxy;
+		this.method = method;
+		this.arguments = arguments != null ? arguments : new Object[0];
+	}
+
+	@Override
+	public Method getMethod() {
+		return method;
+	}
+
+	@Override
+	public Object[] getArguments() {
+		return arguments;
+	}
+
+	@Override
+	public Object proceed() throws Throwable {
+		throw new UnsupportedOperationException("No interceptor chain to proceed with for " + method);
+	}
+
+	@Override
+	public Object getThis() {
+		return proxy;
+	}
+
+	@Override
+	public AccessibleObject getStaticPart() {
+		return method;
+	}
+
+}
@@ -0,0 +1,95 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import org.aopalliance.intercept.MethodInvocation;
+import org.apache.log4j.Logger;
+import org.springframework.remoting.RemoteProxyFailureException;
+import org.springframework.remoting.rmi.RmiClientInterceptorUtils;
+
+/**
+ * Stub methods of business interface methods, resolved once for given stub class. Calls dispatch through this table
+ * instead of checking whether stub implements business interface and looking stub method up on each call, as
+ * {@link RmiClientInterceptorUtils#invokeRemoteMethod(MethodInvocation, Object)} does. Methods are made accessible, so
+ * {@link Method#invoke(Object, Object...)} does not check access either.
+ * <p>
+ * Methods not resolved (not part of business interface or missing in stub class) are invoked by
+ * {@link RmiClientInterceptorUtils} as before.
+ */
+class StubMethodTable {
+
+	private static final Logger LOGGER = Logger.getLogger(StubMethodTable.class);
+
+	private final Class<?> stubClass;
+
+	private final Map<Method, Method> stubMethods = new HashMap<Method, Method>();
+
+	private final Method removeMethod;
+
+	/**
+	 * @param removable whether stub is <code>EJBObject</code> created by home, which has to be removed after call
+	 */
+	StubMethodTable(Class<?> businessInterface, Class<?> stubClass, boolean removable) {
+		this.stubClass = stubClass;
+		for (Method method : businessInterface.getMethods()) {
+			Method stubMethod = resolve(stubClass, method.getName(), method.getParameterTypes());
+			if (stubMethod != null) {
+				stubMethods.put(method, stubMethod);
+			}
+		}
+		this.removeMethod = removable ? resolve(stubClass, "remove", new Class<?>[0]) : null;
+	}
+
+	private static Method resolve(Class<?> stubClass, String name, Class<?>[] parameterTypes) {
+		try {
+			Method method = stubClass.getMethod(name, parameterTypes);
+			try {
+				method.setAccessible(true);
+			} catch (SecurityException e) {
+				// access is checked on each call then
+			}
+			return method;
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	public boolean isFor(Class<?> stubClass) {
+		return this.stubClass == stubClass;
+	}
+
+	public Object invoke(Object stub, MethodInvocation invocation) throws InvocationTargetException {
+		Method stubMethod = stubMethods.get(invocation.getMethod());
+		if (stubMethod == null) {
+			return RmiClientInterceptorUtils.invokeRemoteMethod(invocation, stub);
+		}
+
+		try {
+			return stubMethod.invoke(stub, invocation.getArguments());
+		} catch (InvocationTargetException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new RemoteProxyFailureException("Invocation of RMI stub method failed: " + invocation.getMethod(), e);
+		}
+	}
+
+	/**
+	 * Removes stub if it is <code>EJBObject</code> created by home, logs failure.
+	 */
+	public void remove(Object stub) {
+		if (removeMethod == null) {
+			return;
+		}
+
+		try {
+			removeMethod.invoke(stub);
+		} catch (InvocationTargetException e) {
+			LOGGER.warn("Could not invoke 'remove' on remote EJB proxy", e.getTargetException());
+		} catch (Throwable e) {
+			LOGGER.warn("Could not invoke 'remove' on remote EJB proxy", e);
+		}
+	}
+
+}
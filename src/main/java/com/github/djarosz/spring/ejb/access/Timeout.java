@@ -0,0 +1,19 @@
+package com.github.djarosz.spring.ejb.access;
+
+/**
+ * Handle to task scheduled with {@link TimeoutScheduler}.
+ */
+public interface Timeout {
+
+	/**
+	 * Cancels task if it did not run yet.
+	 *
+	 * @return <code>true</code> if task was cancelled and will not run
+	 */
+	boolean cancel();
+
+	boolean isCancelled();
+
+	boolean isExpired();
+
+}
@@ -0,0 +1,15 @@
+package com.github.djarosz.spring.ejb.access;
+
+/**
+ * Schedules tasks to be run after given delay. Used to interrupt remote calls which take too long
+ * (see {@link WASRemoteStatelessSessionProxyFactoryBean#setTimeoutScheduler(TimeoutScheduler)}).
+ * Implementations must be thread safe so one instance can be shared by many proxy beans.
+ */
+public interface TimeoutScheduler {
+
+	/**
+	 * Runs <var>task</var> after <var>delayMillis</var> unless returned {@link Timeout} is cancelled before.
+	 */
+	Timeout schedule(Runnable task, long delayMillis);
+
+}
@@ -0,0 +1,68 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * {@link TimeoutScheduler} backed by {@link java.util.Timer}. Cancelled tasks stay in timer queue until their
+ * deadline so prefer {@link HashedWheelTimeoutScheduler} when there are many calls.
+ */
+public class TimerTimeoutScheduler implements TimeoutScheduler {
+
+	private final Timer timer;
+
+	public TimerTimeoutScheduler() {
+		this(new Timer(true));
+	}
+
+	public TimerTimeoutScheduler(Timer timer) {
+		this.timer = timer;
+	}
+
+	@Override
+	public Timeout schedule(Runnable task, long delayMillis) {
+		TimerTaskTimeout timeout = new TimerTaskTimeout(task);
+		timer.schedule(timeout, delayMillis);
+		return timeout;
+	}
+
+	public Timer getTimer() {
+		return timer;
+	}
+
+	private static class TimerTaskTimeout extends TimerTask implements Timeout {
+
+		private final Runnable task;
+
+		private volatile boolean cancelled;
+
+		private volatile boolean expired;
+
+		TimerTaskTimeout(Runnable task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			expired = true;
+			task.run();
+		}
+
+		@Override
+		public boolean cancel() {
+			cancelled = super.cancel();
+			return cancelled;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public boolean isExpired() {
+			return expired;
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import org.apache.log4j.Logger;
+
+/**
+ * Creates executors starting virtual thread per task when running on JDK 21 or newer. Project is built for Java 6,
+ * so <code>Thread.ofVirtual()</code> and <code>Executors.newThreadPerTaskExecutor(ThreadFactory)</code> are looked up
+ * reflectively, once.
+ */
+final class VirtualThreads {
+
+	private static final Logger LOGGER = Logger.getLogger(VirtualThreads.class);
+
+	private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+
+	private static final Method NAME = findMethod("java.lang.Thread$Builder", "name", String.class, long.class);
+
+	private static final Method FACTORY = findMethod("java.lang.Thread$Builder", "factory");
+
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR = findMethod(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+	private VirtualThreads() {
+	}
+
+	private static Method findMethod(String className, String name, Class<?>... parameterTypes) {
+		try {
+			return findMethod(Class.forName(className), name, parameterTypes);
+		} catch (ClassNotFoundException e) {
+			return null;
+		}
+	}
+
+	private static Method findMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+		try {
+			return type.getMethod(name, parameterTypes);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null && NAME != null && FACTORY != null && NEW_THREAD_PER_TASK_EXECUTOR != null;
+	}
+
+	/**
+	 * @return executor starting new virtual thread named <var>namePrefix</var> followed by number for each task, or
+	 * <code>null</code> if JVM does not support virtual threads
+	 */
+	public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+		if (!isSupported()) {
+			return null;
+		}
+
+		try {
+			Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+			return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, FACTORY.invoke(builder));
+		} catch (Exception e) {
+			LOGGER.warn("Could not create virtual thread executor", e);
+			return null;
+		}
+	}
+
+}
@@ -1,10 +1,34 @@
 package com.github.djarosz.spring.ejb.access;
 
+import static com.github.djarosz.spring.ejb.access.ClassLoaderActionHelper.doInClassLoader;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.naming.NamingException;
 import org.aopalliance.intercept.MethodInvocation;
 import org.apache.log4j.Logger;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.remoting.RemoteAccessException;
 
 /**
  * Use this to connect to Websphere Application Server secured StatelessSession Beans
@@ -91,6 +115,7 @@ import org.apache.log4j.Logger;
  *		&lt;property name="resourceRef" value="false"/&gt;
  *		&lt;property name="businessInterface" value="com.example.SessionBean"/&gt;
  *		&lt;property name="timeout" value="${CORBA.methodInvocationTimeout}"/&gt;
+ *		&lt;property name="timeoutScheduler" ref="timeoutScheduler"/&gt;
  *		&lt;property name="jndiName" value="${was.target.session.bean.jndi.name}"/&gt;
  *		&lt;property name="providerUrl" value="${was.target.session.bean.provider.url}"/&gt;
  *		&lt;property name="user" value="${was.target.session.bean.login}"/&gt;
@@ -98,6 +123,35 @@ import org.apache.log4j.Logger;
  *		&lt;property name="jndiEnvironment" ref="commonCorbaProperties"/&gt;
  *	&lt;/bean&gt;
  * </pre>
+ *
+ * When <var>timeoutScheduler</var> is not set calls are timed out using shared
+ * {@link HashedWheelTimeoutScheduler#getDefaultInstance()}.
+ * <p>
+ * Instead of single <var>providerUrl</var> list of cluster members' provider URLs can be given as <var>providerUrls</var>.
+ * Each of them gets its own home lookup and calls are spread among them by {@link LoadBalancer}
+ * (see <var>loadBalancingStrategy</var>, <var>endpointFailureThreshold</var> and <var>endpointEjectionTime</var>).
+ * Endpoints look their homes up on first call, <var>lookupHomeOnStartup</var> is ignored, so cluster member which is
+ * down does not prevent startup. {@link #warmUp()} warms up all endpoints.
+ * <p>
+ * Calls of idempotent methods (annotated with {@link Idempotent} or listed in <var>hedgedMethods</var>) can be hedged:
+ * when call has not finished after <var>hedgeDelay</var> milliseconds (or after <var>hedgeDelayPercentile</var> of
+ * latency of its successful calls during last minute, but not less than <var>hedgeDelay</var>) second attempt is sent
+ * from <var>hedgeExecutor</var> thread, to other endpoint when <var>providerUrls</var> are used. First response wins
+ * and thread making the other attempt is interrupted, the same way calls are timed out. At most <var>hedgeBudget</var>
+ * hedges per call are sent.
+ * <p>
+ * With <var>adaptiveTimeoutPercentile</var> set each business method gets its own timeout: that percentile of latency
+ * of its successful calls during last minute times <var>adaptiveTimeoutMultiplier</var>, between <var>minTimeout</var>
+ * and <var>timeout</var> (see {@link AdaptiveTimeout}). Timeouts in use and last timeouts which fired are published in
+ * method statistics.
+ * <p>
+ * By default (<var>invocationMode</var> {@link InvocationMode#INTERRUPT_CALLER}) calls are timed out by interrupting
+ * calling thread. Interrupt is cleared afterwards only when it came from timeout, interrupt status thread had before
+ * call is kept. With {@link InvocationMode#PLATFORM_THREADS} or {@link InvocationMode#VIRTUAL_THREADS} calls with
+ * timeout run on <var>invocationExecutor</var> threads (pool of up to <var>invocationPoolSize</var> threads or virtual
+ * thread per call, started with <var>classLoader</var> as context class loader) and calling thread just waits for
+ * {@link Future} of call, cancelling it on timeout. Calling thread is never interrupted then, so it can be virtual
+ * thread itself. Virtual threads need JDK 21, on older JVMs platform threads are used.
  */
 public class WASRemoteStatelessSessionProxyFactoryBean extends ClassLoaderAwareRemoteStatelessSessionProxyFactoryBean {
 
@@ -105,8 +159,28 @@ public class WASRemoteStatelessSessionProxyFactoryBean extends ClassLoaderAwareR
 
 	public static final int NO_TIMEOUT = -1;
 
+	private static final long MIN_HEDGE_DELAY_SAMPLES = 100;
+
+	private static final ThreadLocal<InterruptTask> INTERRUPT_TASKS = new ThreadLocal<InterruptTask>() {
+		@Override
+		protected InterruptTask initialValue() {
+			return new InterruptTask(Thread.currentThread());
+		}
+	};
+
+	/**
+	 * Set while thread of <var>invocationExecutor</var> makes call, so retries made by it do not hand call off again.
+	 */
+	private static final ThreadLocal<Boolean> IN_INVOCATION_TASK = new ThreadLocal<Boolean>();
+
+	public enum InvocationMode {
+		INTERRUPT_CALLER, PLATFORM_THREADS, VIRTUAL_THREADS
+	}
+
 	private long timeout = NO_TIMEOUT;
 
+	private TimeoutScheduler timeoutScheduler;
+
 	private Timer timer;
 
 	private String providerUrl;
@@ -115,45 +189,448 @@ public class WASRemoteStatelessSessionProxyFactoryBean extends ClassLoaderAwareR
 
 	private String password;
 
+	private String[] providerUrls;
+
+	private LoadBalancer.Strategy loadBalancingStrategy = LoadBalancer.Strategy.POWER_OF_TWO_CHOICES;
+
+	private int endpointFailureThreshold = 3;
+
+	private long endpointEjectionTime = 30000;
+
+	private Class homeInterface;
+
+	private LoadBalancer loadBalancer;
+
+	private String[] hedgedMethods = new String[0];
+
+	private long hedgeDelay;
+
+	private double hedgeDelayPercentile;
+
+	private double hedgeBudget = 0.05;
+
+	private int hedgeBudgetBurst = 10;
+
+	private ExecutorService hedgeExecutor;
+
+	private boolean ownHedgeExecutor;
+
+	private int hedgePoolSize = 10;
+
+	private Set<Method> hedgedMethodSet;
+
+	private HedgeBudget budget;
+
+	private double adaptiveTimeoutPercentile;
+
+	private double adaptiveTimeoutMultiplier = 2;
+
+	private long minTimeout = 100;
+
+	private Map<Method, AdaptiveTimeout> adaptiveTimeouts;
+
+	private InvocationMode invocationMode = InvocationMode.INTERRUPT_CALLER;
+
+	private ExecutorService invocationExecutor;
+
+	private boolean ownInvocationExecutor;
+
+	private int invocationPoolSize = 200;
+
 	@Override
 	public void afterPropertiesSet() throws NamingException {
+		if (providerUrl == null && providerUrls != null && providerUrls.length > 0) {
+			providerUrl = providerUrls[0].trim();
+		}
+		if (adaptiveTimeoutPercentile > 0 && !hasTimeout()) {
+			throw new BeanCreationException("Property 'timeout' (max adaptive timeout) is required when 'adaptiveTimeoutPercentile' is set");
+		}
+		if (isLoadBalanced()) {
+			setLookupHomeOnStartup(false); // endpoints look their homes up themselves
+		}
 		super.afterPropertiesSet();
-		if (hasTimeout() && timer == null) {
-			timer = new Timer();
+		if (timer != null && getLifecycleManager() != null) {
+			getLifecycleManager().addResource(classLoader, timer);
+		}
+	}
+
+	@Override
+	protected void afterInterceptorInitialized() throws NamingException {
+		if (hasTimeout() && getStatistics() != null) {
+			createTimeouts();
+		}
+		if (isLoadBalanced()) {
+			createLoadBalancer();
+		}
+		if ((hedgeDelay > 0 || hedgeDelayPercentile > 0) && getBusinessInterface() != null) {
+			createHedging();
+		}
+		if ((hasTimeout() || hedgedMethodSet != null) && timeoutScheduler == null) {
+			timeoutScheduler = HashedWheelTimeoutScheduler.getDefaultInstance();
+		}
+		if (invocationMode != InvocationMode.INTERRUPT_CALLER && invocationExecutor == null) {
+			createInvocationExecutor();
+		}
+	}
+
+	private void createInvocationExecutor() {
+		String namePrefix = "Invoke-" + getJndiName() + "-";
+		if (invocationMode == InvocationMode.VIRTUAL_THREADS) {
+			invocationExecutor = VirtualThreads.newThreadPerTaskExecutor(namePrefix);
+			if (invocationExecutor == null) {
+				log.warn("Virtual threads not supported by this JVM, calls to remote EJB [" + getJndiName() + "] will run on platform threads");
+			}
+		}
+		if (invocationExecutor == null) {
+			invocationExecutor = new ThreadPoolExecutor(0, invocationPoolSize, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+					new ClassLoaderThreadFactory(classLoader, namePrefix));
+		}
+		ownInvocationExecutor = true;
+		if (getLifecycleManager() != null) {
+			getLifecycleManager().addResource(classLoader, invocationExecutor);
+		}
+	}
+
+	private void createTimeouts() {
+		if (adaptiveTimeoutPercentile > 0) {
+			adaptiveTimeouts = new HashMap<Method, AdaptiveTimeout>();
+		}
+		for (Method method : getBusinessInterface().getMethods()) {
+			MethodStatistics methodStatistics = getStatistics().get(method);
+			methodStatistics.setTimeoutDeadline(timeout);
+			if (adaptiveTimeouts != null) {
+				adaptiveTimeouts.put(method, new AdaptiveTimeout(methodStatistics, adaptiveTimeoutPercentile,
+						adaptiveTimeoutMultiplier, minTimeout, timeout));
+			}
+		}
+	}
+
+	private void createHedging() {
+		List<String> names = Arrays.asList(hedgedMethods);
+		Set<Method> methods = new HashSet<Method>();
+		for (Method method : getBusinessInterface().getMethods()) {
+			if (names.contains(method.getName()) || method.isAnnotationPresent(Idempotent.class)) {
+				methods.add(method);
+			}
 		}
 
-		getJndiTemplate().getEnvironment().setProperty("java.naming.provider.url", providerUrl);
-		getJndiTemplate().getEnvironment().setProperty("com.ibm.CORBA.loginUserid", user);
-		getJndiTemplate().getEnvironment().setProperty("com.ibm.CORBA.loginPassword", password);
+		if (methods.isEmpty()) {
+			log.warn("Hedging of remote EJB [" + getJndiName() + "] enabled but no idempotent methods found");
+			return;
+		}
+		hedgedMethodSet = methods;
+		budget = new HedgeBudget(hedgeBudget, hedgeBudgetBurst);
+		if (hedgeExecutor == null) {
+			hedgeExecutor = new ThreadPoolExecutor(0, hedgePoolSize, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+					new ClassLoaderThreadFactory(classLoader, "Hedge-" + getJndiName()));
+			ownHedgeExecutor = true;
+		}
+	}
+
+	private void createLoadBalancer() throws NamingException {
+		List<RemoteEndpoint> endpoints = new ArrayList<RemoteEndpoint>(providerUrls.length);
+		for (String url : providerUrls) {
+			Properties environment = (Properties) getJndiTemplate().getEnvironment().clone();
+			environment.setProperty("java.naming.provider.url", url.trim());
+			ClassLoaderAwareJndiTemplate jndiTemplate = new ClassLoaderAwareJndiTemplate(classLoader, environment);
+			if (getStatistics() != null) {
+				jndiTemplate.setStatistics(getStatistics().getJndiStatistics());
+			}
+
+			EndpointInvokerInterceptor interceptor = new EndpointInvokerInterceptor();
+			interceptor.setJndiTemplate(jndiTemplate);
+			interceptor.setJndiName(getJndiName());
+			interceptor.setResourceRef(isResourceRef());
+			interceptor.setHomeInterface(homeInterface);
+			interceptor.setLookupHomeOnStartup(false); // endpoint which is down must not prevent startup
+			interceptor.setRefreshHomeOnConnectFailure(true);
+			interceptor.afterPropertiesSet();
+			endpoints.add(new RemoteEndpoint(url.trim(), interceptor));
+		}
+		loadBalancer = new LoadBalancer(endpoints, loadBalancingStrategy, endpointFailureThreshold, endpointEjectionTime);
+	}
+
+	@Override
+	public void destroy() {
+		super.destroy();
+		if (loadBalancer != null) {
+			for (RemoteEndpoint endpoint : loadBalancer.getEndpoints()) {
+				endpoint.getInterceptor().destroy();
+			}
+		}
+		if (ownHedgeExecutor) {
+			hedgeExecutor.shutdownNow();
+		}
+		if (ownInvocationExecutor) {
+			invocationExecutor.shutdownNow();
+		}
+	}
+
+	@Override
+	protected void customizeJndiEnvironment(Properties environment) {
+		environment.setProperty("java.naming.provider.url", providerUrl);
+		environment.setProperty("com.ibm.CORBA.loginUserid", user);
+		environment.setProperty("com.ibm.CORBA.loginPassword", password);
 	}
 
 	protected Object doInvoke(MethodInvocation invocation) throws Throwable {
-		TimerTask interruptTask = null;
+		long callTimeout = getTimeout(invocation);
+		if (callTimeout > 0 && invocationExecutor != null && IN_INVOCATION_TASK.get() == null) {
+			return invokeOnExecutor(invocation, callTimeout);
+		}
+		return invokeInterruptingCaller(invocation, callTimeout);
+	}
+
+	private Object invokeInterruptingCaller(MethodInvocation invocation, long callTimeout) throws Throwable {
+		Timeout interruptTimeout = null;
+		InterruptTask interruptTask = INTERRUPT_TASKS.get();
+		int interrupts = interruptTask.getInterrupts();
+		boolean interrupted = Thread.currentThread().isInterrupted();
 
 		try {
-			if (hasTimeout()) {
-				interruptTask = interruptAfter(Thread.currentThread(), timeout);
+			if (callTimeout > 0) {
+				interruptTimeout = timeoutScheduler.schedule(interruptTask, callTimeout);
 			}
-			return super.doInvoke(invocation);
+			return invokeCall(invocation);
 		} finally {
-			if (hasTimeout() && interruptTask != null) {
-				interruptTask.cancel();
+			if (interruptTimeout != null && !interruptTimeout.cancel() && interruptTimeout.isExpired()) {
+				recordTimeout(invocation, callTimeout);
+				interruptTask.clearInterrupt(interrupts, interrupted);
 			}
-			Thread.interrupted();
 		}
 	}
 
-	private TimerTask interruptAfter(final Thread thread, long timeout) {
-		TimerTask timerTask = new TimerTask() {
+	/**
+	 * Makes call on invocation executor thread and waits for it at most <var>callTimeout</var> milliseconds, calls
+	 * rejected by executor are made by calling thread.
+	 */
+	private Object invokeOnExecutor(final MethodInvocation invocation, long callTimeout) throws Throwable {
+		Future<Object> future;
+		try {
+			future = invocationExecutor.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws Exception {
+					IN_INVOCATION_TASK.set(Boolean.TRUE);
+					try {
+						return doInClassLoader(classLoader, new ClassLoaderActionCallback<Object>() {
+							@Override
+							public Object execute() throws Throwable {
+								return invokeCall(invocation);
+							}
+						});
+					} catch (Exception e) {
+						throw e;
+					} catch (Error e) {
+						throw e;
+					} catch (Throwable e) {
+						throw new UndeclaredThrowableException(e);
+					} finally {
+						IN_INVOCATION_TASK.remove();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			log.debug("Call to " + invocation.getMethod() + " rejected by invocation executor, making it in calling thread");
+			return invokeInterruptingCaller(invocation, callTimeout);
+		}
+
+		try {
+			return future.get(callTimeout, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			throw e.getCause();
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			recordTimeout(invocation, callTimeout);
+			throw new RemoteAccessException("Call to " + invocation.getMethod() + " timed out after " + callTimeout + " ms");
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new RemoteAccessException("Interrupted while waiting for call to " + invocation.getMethod(), e);
+		}
+	}
+
+	private void recordTimeout(MethodInvocation invocation, long callTimeout) {
+		log.debug("Call to " + invocation.getMethod() + " timed out after " + callTimeout + " ms");
+		MethodStatistics methodStatistics = getMethodStatistics(invocation);
+		if (methodStatistics != null) {
+			methodStatistics.recordTimeout(callTimeout);
+		}
+	}
+
+	private Object invokeCall(MethodInvocation invocation) throws Throwable {
+		if (hedgedMethodSet != null && hedgedMethodSet.contains(invocation.getMethod())) {
+			return invokeHedged(invocation);
+		}
+		return invokeTarget(invocation, null, null);
+	}
+
+	private long getTimeout(MethodInvocation invocation) {
+		if (adaptiveTimeouts != null) {
+			AdaptiveTimeout adaptiveTimeout = adaptiveTimeouts.get(invocation.getMethod());
+			if (adaptiveTimeout != null) {
+				return adaptiveTimeout.get();
+			}
+		}
+		return timeout;
+	}
+
+	/**
+	 * @param excluded endpoints not to call when <var>providerUrls</var> are used, may be <code>null</code>
+	 * @param selected set endpoints the call goes to are added to, may be <code>null</code>
+	 */
+	private Object invokeTarget(MethodInvocation invocation, Set<RemoteEndpoint> excluded, Set<RemoteEndpoint> selected)
+			throws Throwable {
+		return loadBalancer != null ? invokeLoadBalanced(invocation, excluded, selected) : super.doInvoke(invocation);
+	}
+
+	private Object invokeHedged(final MethodInvocation invocation) throws Throwable {
+		budget.onCall();
+		final MethodStatistics methodStatistics = getMethodStatistics(invocation);
+		long delay = getHedgeDelay(methodStatistics);
+		if (delay <= 0) {
+			return invokeTarget(invocation, null, null);
+		}
+
+		final boolean interrupted = Thread.currentThread().isInterrupted();
+		final HedgedCall call = new HedgedCall(Thread.currentThread());
+		Timeout hedgeTimeout = timeoutScheduler.schedule(new Runnable() {
+			@Override
 			public void run() {
-				log.debug("Before interrupt thread: " + thread.getName());
-				thread.interrupt();
-				log.debug("After interrupt thread");
+				startHedge(call, invocation, methodStatistics);
 			}
-		};
-		timer.schedule(timerTask, timeout);
+		}, delay);
 
-		return timerTask;
+		try {
+			Object result = invokeTarget(invocation, null, call.getPrimaryEndpoints());
+			if (!call.primaryFinished()) {
+				clearHedgeInterrupt(interrupted); // hedge won meanwhile and interrupted this thread
+			}
+			return result;
+		} catch (Throwable e) {
+			if (!call.primaryFinished()) {
+				clearHedgeInterrupt(interrupted);
+				return call.getHedgeResult(); // interrupted because hedge won
+			}
+			throw e;
+		} finally {
+			hedgeTimeout.cancel();
+			call.cancelHedge();
+		}
+	}
+
+	/**
+	 * Clears interrupt of winning hedge, restoring interrupt status calling thread had before call.
+	 */
+	private static void clearHedgeInterrupt(boolean interrupted) {
+		Thread.interrupted();
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private long getHedgeDelay(MethodStatistics methodStatistics) {
+		if (hedgeDelayPercentile > 0 && methodStatistics != null
+				&& methodStatistics.getRecentLatency().getCount() >= MIN_HEDGE_DELAY_SAMPLES) {
+			long percentileMillis = methodStatistics.getRecentLatency().getPercentileMicros(hedgeDelayPercentile) / 1000;
+			return Math.max(hedgeDelay, percentileMillis);
+		}
+		return hedgeDelay;
+	}
+
+	/**
+	 * Called by timeout scheduler thread when call is not finished after hedge delay, so must not block.
+	 */
+	private void startHedge(final HedgedCall call, final MethodInvocation invocation, final MethodStatistics methodStatistics) {
+		if (call.isFinished() || !budget.tryAcquire()) {
+			return;
+		}
+
+		try {
+			call.setHedge(hedgeExecutor.submit(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Object result = invokeTarget(invocation, call.copyPrimaryEndpoints(), null);
+						if (call.hedgeFinished(result) && methodStatistics != null) {
+							methodStatistics.recordHedgeWin();
+						}
+					} catch (Throwable e) {
+						log.debug("Hedged call to " + invocation.getMethod() + " failed", e);
+					} finally {
+						Thread.interrupted();
+					}
+				}
+			}));
+			if (methodStatistics != null) {
+				methodStatistics.recordHedge();
+			}
+		} catch (RejectedExecutionException e) {
+			log.debug("Hedge of call to " + invocation.getMethod() + " rejected, all hedge threads busy");
+		}
+	}
+
+	private Object invokeLoadBalanced(final MethodInvocation invocation, final Set<RemoteEndpoint> excluded,
+			final Set<RemoteEndpoint> selected) throws Throwable {
+		return doInClassLoader(classLoader, new ClassLoaderActionCallback<Object>() {
+			@Override
+			public Object execute() throws Throwable {
+				return loadBalancer.invoke(invocation, excluded, selected);
+			}
+		});
+	}
+
+	/**
+	 * Warms up all endpoints when <var>providerUrls</var> are used, fails only if none of them could be warmed up.
+	 */
+	@Override
+	public void warmUp() throws Exception {
+		if (loadBalancer == null) {
+			super.warmUp();
+			return;
+		}
+
+		long start = System.currentTimeMillis();
+		Exception failure = null;
+		int warmedUp = 0;
+		for (final RemoteEndpoint endpoint : loadBalancer.getEndpoints()) {
+			try {
+				doInClassLoader(classLoader, new ClassLoaderActionCallback<Object>() {
+					@Override
+					public Object execute() throws Throwable {
+						((EndpointInvokerInterceptor) endpoint.getInterceptor()).warmUp();
+						return null;
+					}
+				});
+				warmedUp++;
+			} catch (Exception e) {
+				log.warn("Warm up of remote EJB [" + getJndiName() + "] endpoint " + endpoint.getProviderUrl() + " failed", e);
+				failure = e;
+			} catch (Throwable e) {
+				throw new ClassLoaderActionRuntimeException(e);
+			}
+		}
+		if (warmedUp == 0) {
+			throw failure;
+		}
+		log.info("Remote EJB [" + getJndiName() + "] warmed up " + warmedUp + " of " + loadBalancer.getEndpoints().size()
+				+ " endpoints in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * Load balanced endpoints refresh their homes themselves, so on connect failure call is just retried.
+	 */
+	@Override
+	protected Object refreshAndRetry(MethodInvocation invocation) throws Throwable {
+		if (loadBalancer != null) {
+			return doInvoke(invocation);
+		}
+		return super.refreshAndRetry(invocation);
+	}
+
+	@Override
+	public void setHomeInterface(Class homeInterface) {
+		super.setHomeInterface(homeInterface);
+		this.homeInterface = homeInterface;
 	}
 
 	public void setTimeout(long timeout) {
@@ -168,8 +645,44 @@ public class WASRemoteStatelessSessionProxyFactoryBean extends ClassLoaderAwareR
 		return timer;
 	}
 
+	/**
+	 * Kept for backward compatibility, prefer {@link #setTimeoutScheduler(TimeoutScheduler)}. With <var>lifecycleManager</var>
+	 * set the timer is cancelled when <var>classLoader</var> is released, so it must not be shared with beans using other
+	 * class loaders.
+	 */
 	public void setTimer(Timer timer) {
 		this.timer = timer;
+		this.timeoutScheduler = new TimerTimeoutScheduler(timer);
+	}
+
+	/**
+	 * @param adaptiveTimeoutPercentile latency percentile of method (eg 0.99) its timeout is derived from, 0 (default)
+	 * disables adaptive timeouts. Requires <var>timeout</var>, which is max adaptive timeout then.
+	 */
+	public void setAdaptiveTimeoutPercentile(double adaptiveTimeoutPercentile) {
+		this.adaptiveTimeoutPercentile = adaptiveTimeoutPercentile;
+	}
+
+	/**
+	 * @param adaptiveTimeoutMultiplier latency percentile is multiplied by this to get timeout, 2 by default
+	 */
+	public void setAdaptiveTimeoutMultiplier(double adaptiveTimeoutMultiplier) {
+		this.adaptiveTimeoutMultiplier = adaptiveTimeoutMultiplier;
+	}
+
+	/**
+	 * @param minTimeout min adaptive timeout in milliseconds, 100 by default
+	 */
+	public void setMinTimeout(long minTimeout) {
+		this.minTimeout = minTimeout;
+	}
+
+	public TimeoutScheduler getTimeoutScheduler() {
+		return timeoutScheduler;
+	}
+
+	public void setTimeoutScheduler(TimeoutScheduler timeoutScheduler) {
+		this.timeoutScheduler = timeoutScheduler;
 	}
 
 	public String getProviderUrl() {
@@ -196,8 +709,250 @@ public class WASRemoteStatelessSessionProxyFactoryBean extends ClassLoaderAwareR
 		this.password = password;
 	}
 
+	public String[] getProviderUrls() {
+		return providerUrls;
+	}
+
+	/**
+	 * @param providerUrls provider URLs of cluster members to spread calls across
+	 */
+	public void setProviderUrls(String[] providerUrls) {
+		this.providerUrls = providerUrls;
+	}
+
+	/**
+	 * @param loadBalancingStrategy how endpoint is chosen, power of two choices by default
+	 */
+	public void setLoadBalancingStrategy(LoadBalancer.Strategy loadBalancingStrategy) {
+		this.loadBalancingStrategy = loadBalancingStrategy;
+	}
+
+	/**
+	 * @param endpointFailureThreshold number of consecutive failures after which endpoint is ejected, 3 by default
+	 */
+	public void setEndpointFailureThreshold(int endpointFailureThreshold) {
+		this.endpointFailureThreshold = endpointFailureThreshold;
+	}
+
+	/**
+	 * @param endpointEjectionTime milliseconds ejected endpoint gets no calls, 30 seconds by default
+	 */
+	public void setEndpointEjectionTime(long endpointEjectionTime) {
+		this.endpointEjectionTime = endpointEjectionTime;
+	}
+
+	/**
+	 * @param hedgedMethods names of idempotent business methods which can be hedged, in addition to methods
+	 * annotated with {@link Idempotent}
+	 */
+	public void setHedgedMethods(String[] hedgedMethods) {
+		this.hedgedMethods = hedgedMethods;
+	}
+
+	/**
+	 * @param hedgeDelay milliseconds after which hedge is sent, minimum delay when <var>hedgeDelayPercentile</var> is set
+	 */
+	public void setHedgeDelay(long hedgeDelay) {
+		this.hedgeDelay = hedgeDelay;
+	}
+
+	/**
+	 * @param hedgeDelayPercentile latency percentile of method (eg 0.95) after which hedge is sent
+	 */
+	public void setHedgeDelayPercentile(double hedgeDelayPercentile) {
+		this.hedgeDelayPercentile = hedgeDelayPercentile;
+	}
+
+	/**
+	 * @param hedgeBudget max number of hedges per call, 0.05 by default
+	 */
+	public void setHedgeBudget(double hedgeBudget) {
+		this.hedgeBudget = hedgeBudget;
+	}
+
+	/**
+	 * @param hedgeBudgetBurst max number of hedges sent in row, 10 by default
+	 */
+	public void setHedgeBudgetBurst(int hedgeBudgetBurst) {
+		this.hedgeBudgetBurst = hedgeBudgetBurst;
+	}
+
+	/**
+	 * @param hedgeExecutor executor sending hedges, its threads must use bean class loader as context class loader.
+	 * When not set pool of <var>hedgePoolSize</var> threads is created.
+	 */
+	public void setHedgeExecutor(ExecutorService hedgeExecutor) {
+		this.hedgeExecutor = hedgeExecutor;
+	}
+
+	public void setHedgePoolSize(int hedgePoolSize) {
+		this.hedgePoolSize = hedgePoolSize;
+	}
+
+	/**
+	 * @param invocationMode how calls with timeout are made and timed out, {@link InvocationMode#INTERRUPT_CALLER} by default
+	 */
+	public void setInvocationMode(InvocationMode invocationMode) {
+		this.invocationMode = invocationMode;
+	}
+
+	/**
+	 * @param invocationExecutor executor making calls with timeout instead of calling thread, its threads must use bean
+	 * class loader as context class loader. Created according to <var>invocationMode</var> when not set.
+	 */
+	public void setInvocationExecutor(ExecutorService invocationExecutor) {
+		this.invocationExecutor = invocationExecutor;
+	}
+
+	/**
+	 * @param invocationPoolSize max number of platform threads making calls with {@link InvocationMode#PLATFORM_THREADS},
+	 * 200 by default. Calls over the limit are made by calling thread.
+	 */
+	public void setInvocationPoolSize(int invocationPoolSize) {
+		this.invocationPoolSize = invocationPoolSize;
+	}
+
+	/**
+	 * @return load balancer or <code>null</code> if only one provider URL is used
+	 */
+	public LoadBalancer getLoadBalancer() {
+		return loadBalancer;
+	}
+
+	private boolean isLoadBalanced() {
+		return providerUrls != null && providerUrls.length > 1;
+	}
+
 	private boolean hasTimeout() {
 		return timeout > 0;
 	}
 
+	/**
+	 * State of hedged call shared by calling thread (making first attempt) and hedge thread. Whichever finishes first
+	 * wins, hedge interrupts calling thread under lock so interrupt can not hit calling thread after call finished.
+	 */
+	private static class HedgedCall {
+
+		private final Thread caller;
+
+		/**
+		 * Endpoints first attempt went to, hedge goes to other one.
+		 */
+		private final Set<RemoteEndpoint> primaryEndpoints = Collections.synchronizedSet(new HashSet<RemoteEndpoint>());
+
+		private boolean finished;
+
+		private boolean hedgeWon;
+
+		private Object hedgeResult;
+
+		private Future<?> hedge;
+
+		HedgedCall(Thread caller) {
+			this.caller = caller;
+		}
+
+		synchronized boolean isFinished() {
+			return finished;
+		}
+
+		Set<RemoteEndpoint> getPrimaryEndpoints() {
+			return primaryEndpoints;
+		}
+
+		Set<RemoteEndpoint> copyPrimaryEndpoints() {
+			synchronized (primaryEndpoints) {
+				return new HashSet<RemoteEndpoint>(primaryEndpoints);
+			}
+		}
+
+		/**
+		 * @return <code>true</code> if first attempt won
+		 */
+		synchronized boolean primaryFinished() {
+			if (finished) {
+				return !hedgeWon;
+			}
+			finished = true;
+			return true;
+		}
+
+		/**
+		 * @return <code>true</code> if hedge won
+		 */
+		synchronized boolean hedgeFinished(Object result) {
+			if (finished) {
+				return false;
+			}
+			finished = true;
+			hedgeWon = true;
+			hedgeResult = result;
+			caller.interrupt();
+			return true;
+		}
+
+		synchronized Object getHedgeResult() {
+			return hedgeResult;
+		}
+
+		synchronized void setHedge(Future<?> hedge) {
+			this.hedge = hedge;
+			if (finished && !hedgeWon) {
+				hedge.cancel(true);
+			}
+		}
+
+		synchronized void cancelHedge() {
+			if (hedge != null && !hedgeWon) {
+				hedge.cancel(true);
+			}
+		}
+	}
+
+	private static class InterruptTask implements Runnable {
+
+		private final Thread thread;
+
+		private static final long MAX_INTERRUPT_WAIT = 1000;
+
+		private final AtomicInteger interrupts = new AtomicInteger();
+
+		InterruptTask(Thread thread) {
+			this.thread = thread;
+		}
+
+		@Override
+		public void run() {
+			try {
+				log.debug("Before interrupt thread: " + thread.getName());
+				thread.interrupt();
+			} finally {
+				interrupts.incrementAndGet(); // even if logging failed, so interrupted thread does not wait for it forever
+			}
+			log.debug("After interrupt thread");
+		}
+
+		int getInterrupts() {
+			return interrupts.get();
+		}
+
+		/**
+		 * Called by interrupted thread once timeout fired: waits till interrupt reaches it (timeout task may still be
+		 * running, but not longer than {@link #MAX_INTERRUPT_WAIT} milliseconds) and clears it, restoring interrupt status
+		 * thread had before call.
+		 *
+		 * @param interruptsBefore value of {@link #getInterrupts()} before timeout was scheduled
+		 */
+		void clearInterrupt(int interruptsBefore, boolean interrupted) {
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_INTERRUPT_WAIT);
+			while (interrupts.get() == interruptsBefore && System.nanoTime() - deadline < 0) {
+				Thread.yield();
+			}
+			Thread.interrupted();
+			if (interrupted) {
+				thread.interrupt();
+			}
+		}
+	}
+
 }
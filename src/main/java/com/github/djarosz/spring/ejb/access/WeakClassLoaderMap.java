@@ -0,0 +1,118 @@
+package com.github.djarosz.spring.ejb.access;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent map keyed weakly by {@link ClassLoader} identity. Reads are lock free, entries of class loaders
+ * which were garbage collected are expunged on subsequent writes. <code>null</code> class loader
+ * (bootstrap) is a valid key.
+ */
+class WeakClassLoaderMap<V> {
+
+	private final ConcurrentHashMap<Object, V> entries = new ConcurrentHashMap<Object, V>();
+
+	private final ReferenceQueue<ClassLoader> queue = new ReferenceQueue<ClassLoader>();
+
+	private volatile V nullLoaderValue;
+
+	public V get(ClassLoader classLoader) {
+		if (classLoader == null) {
+			return nullLoaderValue;
+		}
+		return entries.get(new LookupKey(classLoader));
+	}
+
+	public V putIfAbsent(ClassLoader classLoader, V value) {
+		if (classLoader == null) {
+			synchronized (this) {
+				if (nullLoaderValue == null) {
+					nullLoaderValue = value;
+					return null;
+				}
+				return nullLoaderValue;
+			}
+		}
+		expungeStaleEntries();
+		return entries.putIfAbsent(new WeakKey(classLoader, queue), value);
+	}
+
+	public V remove(ClassLoader classLoader) {
+		if (classLoader == null) {
+			synchronized (this) {
+				V value = nullLoaderValue;
+				nullLoaderValue = null;
+				return value;
+			}
+		}
+		expungeStaleEntries();
+		return entries.remove(new LookupKey(classLoader));
+	}
+
+	public int size() {
+		expungeStaleEntries();
+		return entries.size() + (nullLoaderValue != null ? 1 : 0);
+	}
+
+	private void expungeStaleEntries() {
+		Reference<? extends ClassLoader> ref;
+		while ((ref = queue.poll()) != null) {
+			entries.remove(ref);
+		}
+	}
+
+	private static final class WeakKey extends WeakReference<ClassLoader> {
+
+		private final int hash;
+
+		WeakKey(ClassLoader classLoader, ReferenceQueue<ClassLoader> queue) {
+			super(classLoader, queue);
+			this.hash = System.identityHashCode(classLoader);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			ClassLoader classLoader = get();
+			if (classLoader == null) { // cleared key is only equal to itself
+				return false;
+			}
+			if (other instanceof WeakKey) {
+				return classLoader == ((WeakKey) other).get();
+			}
+			return other instanceof LookupKey && classLoader == ((LookupKey) other).classLoader;
+		}
+	}
+
+	private static final class LookupKey {
+
+		private final ClassLoader classLoader;
+
+		LookupKey(ClassLoader classLoader) {
+			this.classLoader = classLoader;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(classLoader);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other instanceof WeakKey) {
+				return classLoader == ((WeakKey) other).get();
+			}
+			return other instanceof LookupKey && classLoader == ((LookupKey) other).classLoader;
+		}
+	}
+
+}
@@ -0,0 +1,196 @@
+package com.github.djarosz.spring.ejb.access;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+	private static final long SLOW_CALL_DURATION = 100;
+
+	private static final long OPEN_DURATION = 50;
+
+	private static final int PROBES = 3;
+
+	private CircuitBreaker breaker;
+
+	@Before
+	public void setUp() {
+		breaker = new CircuitBreaker();
+		breaker.setName("test");
+		breaker.setWindowSize(10);
+		breaker.setMinimumCalls(4);
+		breaker.setFailureRateThreshold(0.5);
+		breaker.setSlowCallDuration(SLOW_CALL_DURATION);
+		breaker.setSlowCallRateThreshold(0.5);
+		breaker.setOpenDuration(OPEN_DURATION);
+		breaker.setHalfOpenProbes(PROBES);
+	}
+
+	@Test
+	public void opensOnFailureRate() {
+		call(false, false);
+		call(false, false);
+		call(true, false);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState()); // below minimum calls
+
+		call(true, false);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(1, breaker.getOpenedCount());
+		assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+		assertEquals(1, breaker.getRejectedCount());
+	}
+
+	@Test
+	public void staysClosedBelowFailureRate() {
+		for (int i = 0; i < 20; i++) {
+			call(i % 3 == 2, false);
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void opensOnSlowCallRate() {
+		call(false, true);
+		call(false, false);
+		call(false, true);
+		call(false, false);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(0.5, breaker.getSlowCallRate(), 0);
+		assertEquals(0, breaker.getFailureRate(), 0);
+	}
+
+	@Test
+	public void ignoresSlowCallsWhenDisabled() {
+		breaker.setSlowCallDuration(0);
+		for (int i = 0; i < 10; i++) {
+			call(false, true);
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void halfOpensAfterOpenDuration() throws InterruptedException {
+		open();
+		assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+		waitOpenDuration();
+		for (int i = 0; i < PROBES; i++) {
+			assertTrue(breaker.tryAcquire() != CircuitBreaker.REJECTED);
+		}
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire()); // only PROBES calls let through
+	}
+
+	@Test
+	public void reopensWhenProbeFails() throws InterruptedException {
+		open();
+		waitOpenDuration();
+		long first = breaker.tryAcquire();
+		long second = breaker.tryAcquire();
+		breaker.onResult(first, 0, false);
+		breaker.onResult(second, 0, true);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(2, breaker.getOpenedCount());
+		assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+	}
+
+	@Test
+	public void reopensWhenProbeIsSlow() throws InterruptedException {
+		open();
+		waitOpenDuration();
+		breaker.onResult(breaker.tryAcquire(), latency(true), false);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void closesWhenAllProbesSucceed() throws InterruptedException {
+		open();
+		waitOpenDuration();
+		long[] permits = new long[PROBES];
+		for (int i = 0; i < PROBES; i++) {
+			permits[i] = breaker.tryAcquire();
+		}
+		for (int i = 0; i < PROBES; i++) {
+			assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+			breaker.onResult(permits[i], 0, false);
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals(0, breaker.getFailureRate(), 0); // window starts empty after closing
+
+		call(true, false);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void ignoresStalePermit() throws InterruptedException {
+		long closedPermit = breaker.tryAcquire();
+		open();
+		waitOpenDuration();
+		long probe = breaker.tryAcquire();
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+		breaker.onResult(closedPermit, latency(true), true); // admitted while closed, must not count as probe
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+		breaker.onResult(probe, 0, false);
+		for (int i = 1; i < PROBES; i++) {
+			call(false, false);
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void onIgnoredReturnsProbe() throws InterruptedException {
+		open();
+		waitOpenDuration();
+		long[] permits = new long[PROBES];
+		for (int i = 0; i < PROBES; i++) {
+			permits[i] = breaker.tryAcquire();
+		}
+		assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+		breaker.onIgnored(permits[0]);
+		long replacement = breaker.tryAcquire();
+		assertTrue(replacement != CircuitBreaker.REJECTED);
+		assertEquals(CircuitBreaker.REJECTED, breaker.tryAcquire());
+
+		breaker.onResult(replacement, 0, false);
+		breaker.onResult(permits[1], 0, false);
+		breaker.onResult(permits[2], 0, false);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void resetCloses() {
+		open();
+		breaker.reset();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.tryAcquire() != CircuitBreaker.REJECTED);
+	}
+
+	private void open() {
+		for (int i = 0; i < 4; i++) {
+			call(true, false);
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	private void call(boolean failed, boolean slow) {
+		long permit = breaker.tryAcquire();
+		assertTrue(permit != CircuitBreaker.REJECTED);
+		breaker.onResult(permit, latency(slow), failed);
+	}
+
+	private static long latency(boolean slow) {
+		return slow ? TimeUnit.MILLISECONDS.toNanos(SLOW_CALL_DURATION) : 0;
+	}
+
+	private static void waitOpenDuration() throws InterruptedException {
+		Thread.sleep(OPEN_DURATION + 20);
+	}
+
+}